@@ -1,7 +1,11 @@
 package net.cmr.modcontroller;
 
+import net.cmr.modcontroller.download.DeferredStatus;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.common.Mod;
+import net.neoforged.fml.loading.FMLPaths;
+
+import java.nio.file.Path;
 
 @Mod("modcontroller")
 public class ModController {
@@ -11,5 +15,38 @@ public class ModController {
         System.out.println("MOD CONTROLLER: Loaded successfully");
         System.out.println("Downloads were handled by ModControllerLocator");
         System.out.println("========================================");
+
+        DeferredStatus status = DeferredStatus.read(FMLPaths.GAMEDIR.get());
+        if (status != null && status.active) {
+            startBackgroundReporter(FMLPaths.GAMEDIR.get());
+        }
+    }
+
+    // Logs progress of non-critical downloads that continue after mod discovery
+    private static void startBackgroundReporter(Path gameDir) {
+        Thread reporter = new Thread(() -> {
+            int lastDone = -1;
+            while (true) {
+                DeferredStatus status = DeferredStatus.read(gameDir);
+                if (status == null) return;
+                if (status.done != lastDone || !status.active) {
+                    lastDone = status.done;
+                    if (!status.active) {
+                        System.out.println("MOD CONTROLLER: Background downloads finished (" + status.total +
+                                           " file(s), " + status.failed + " failed)");
+                        return;
+                    }
+                    System.out.println("MOD CONTROLLER: Background downloads " + status.done + "/" + status.total +
+                                       (status.current != null && !status.current.isEmpty() ? " - " + status.current : ""));
+                }
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "ModController-BackgroundStatus");
+        reporter.setDaemon(true);
+        reporter.start();
     }
 }
@@ -0,0 +1,183 @@
+package net.cmr.modcontroller.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.cmr.modcontroller.config.ModConfig;
+import net.cmr.modcontroller.download.ArtifactServer;
+import net.cmr.modcontroller.download.DownloadManager;
+import net.cmr.modcontroller.download.Reconciler;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the download phase without starting the game, e.g. to prewarm a game directory while
+ * building a container image. Uses no NeoForge classes; only the mod jar and Gson are needed:
+ * <pre>
+ * java -cp modcontroller.jar:gson.jar net.cmr.modcontroller.cli.PrefetchCli --game-dir /srv/mc --summary -
+ * </pre>
+ * Running the command counts as consent. Exit codes are listed below.
+ */
+public class PrefetchCli {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_DOWNLOADS_FAILED = 1;
+    public static final int EXIT_CONFIG_ERROR = 2;
+    public static final int EXIT_UNEXPECTED = 3;
+    public static final int EXIT_USAGE = 64;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        Path gameDir = Paths.get("").toAbsolutePath();
+        String summaryTarget = null;
+        boolean force = false;
+        boolean serve = false;
+        boolean planOnly = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--game-dir" -> {
+                    if (++i >= args.length) return usage("--game-dir needs a value");
+                    gameDir = Paths.get(args[i]).toAbsolutePath();
+                }
+                case "--summary" -> {
+                    if (++i >= args.length) return usage("--summary needs a value");
+                    summaryTarget = args[i];
+                }
+                case "--force" -> force = true;
+                case "--serve" -> serve = true;
+                case "--plan" -> planOnly = true;
+                case "--help", "-h" -> {
+                    return usage(null);
+                }
+                default -> {
+                    return usage("Unknown argument: " + args[i]);
+                }
+            }
+        }
+
+        // With "--summary -" stdout carries only the summary, so logs go to stderr
+        PrintStream summaryOut = System.out;
+        if ("-".equals(summaryTarget)) System.setOut(System.err);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("game_dir", gameDir.toString());
+        long start = System.currentTimeMillis();
+        int exitCode;
+
+        try {
+            ModConfig config;
+            try {
+                config = ModConfig.load(gameDir);
+            } catch (Exception e) {
+                System.err.println("ModController: " + e.getMessage());
+                summary.put("status", "config_error");
+                summary.put("error", e.getMessage());
+                return finish(summary, summaryTarget, summaryOut, start, EXIT_CONFIG_ERROR);
+            }
+
+            DownloadManager dm = new DownloadManager(gameDir, config,
+                (phase, percent, message) -> System.out.println("ModController: " + phase + " - " + message + " (" + percent + "%)"));
+            dm.setUiPacing(false);
+
+            if (planOnly) {
+                // Dry run: show what a run would do and change nothing
+                Reconciler.Plan plan = dm.plan();
+                plan.print();
+                List<Map<String, Object>> steps = new ArrayList<>();
+                for (Reconciler.Step step : plan.steps) {
+                    Map<String, Object> s = new LinkedHashMap<>();
+                    s.put("action", step.action.name().toLowerCase());
+                    s.put("name", step.name);
+                    s.put("path", step.path);
+                    s.put("reason", step.reason);
+                    steps.add(s);
+                }
+                summary.put("status", "planned");
+                summary.put("plan", steps);
+                return finish(summary, summaryTarget, summaryOut, start, EXIT_OK);
+            }
+
+            if (!force && !dm.shouldRunDownloads()) {
+                summary.put("status", "up_to_date");
+                exitCode = EXIT_OK;
+            } else {
+                // Nothing waits on discovery here, so background entries run in the foreground too
+                DownloadManager.RunResult result = dm.runDownloads().plus(dm.runDeferredDownloads());
+                summary.put("status", result.failed > 0 ? "failed" : "ok");
+                summary.put("success", result.success);
+                summary.put("failed", result.failed);
+                summary.put("skipped", result.skipped);
+                List<Map<String, Object>> entries = new ArrayList<>();
+                for (DownloadManager.EntryResult entry : result.entries) {
+                    Map<String, Object> e = new LinkedHashMap<>();
+                    e.put("name", entry.name);
+                    e.put("destination", entry.destination);
+                    e.put("result", entry.result.name());
+                    entries.add(e);
+                }
+                summary.put("entries", entries);
+                exitCode = result.failed > 0 ? EXIT_DOWNLOADS_FAILED : EXIT_OK;
+            }
+
+            if (serve) {
+                ArtifactServer server = dm.startArtifactServer();
+                if (server == null) {
+                    System.err.println("ModController: --serve needs \"fleet\": {\"serve\": true} in the config");
+                } else {
+                    finish(summary, summaryTarget, summaryOut, start, exitCode);
+                    Thread.currentThread().join(); // Serve until the process is stopped
+                }
+            }
+            return finish(summary, summaryTarget, summaryOut, start, exitCode);
+        } catch (Exception e) {
+            e.printStackTrace();
+            summary.put("status", "error");
+            summary.put("error", String.valueOf(e.getMessage()));
+            return finish(summary, summaryTarget, summaryOut, start, EXIT_UNEXPECTED);
+        }
+    }
+
+    private static int finish(Map<String, Object> summary, String target, PrintStream stdout, long start, int exitCode) {
+        summary.put("exit_code", exitCode);
+        summary.put("duration_ms", System.currentTimeMillis() - start);
+        if (target == null) return exitCode;
+
+        String json = GSON.toJson(summary);
+        if ("-".equals(target)) {
+            stdout.println(json);
+            stdout.flush();
+        } else {
+            try {
+                Path file = Paths.get(target);
+                if (file.getParent() != null) Files.createDirectories(file.getParent());
+                Files.writeString(file, json);
+            } catch (Exception e) {
+                System.err.println("ModController: Failed to write summary: " + e.getMessage());
+            }
+        }
+        return exitCode;
+    }
+
+    private static int usage(String error) {
+        if (error != null) System.err.println(error);
+        System.err.println("Usage: PrefetchCli [--game-dir <dir>] [--summary <file|->] [--force] [--serve] [--plan]");
+        System.err.println("  --game-dir  game directory containing config/modcontroller.json (default: current directory)");
+        System.err.println("  --summary   write a JSON summary to a file, or '-' for stdout (logs then go to stderr)");
+        System.err.println("  --force     run even if the config says downloads are not needed");
+        System.err.println("  --serve     keep running and serve artifacts to fleet peers afterwards");
+        System.err.println("  --plan      print what would be downloaded, replaced or removed, and change nothing");
+        System.err.println("Exit codes: 0 ok, 1 downloads failed, 2 config error, 3 unexpected error, 64 usage");
+        return error == null ? EXIT_OK : EXIT_USAGE;
+    }
+}
@@ -0,0 +1,13 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public class BackupConfig {
+    // Backups kept for each file name; older ones are deleted. 0 keeps all
+    @SerializedName("keep_per_file")
+    public int keepPerFile = 3;
+
+    // Size cap for each .modcontroller-backups folder, oldest backups go first. 0 means no cap
+    @SerializedName("max_folder_mb")
+    public long maxFolderMb = 1024;
+}
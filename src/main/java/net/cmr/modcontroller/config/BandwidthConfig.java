@@ -0,0 +1,28 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public class BandwidthConfig {
+    // Host-wide cap in KiB/s, shared by every ModController instance currently downloading (0 = unlimited)
+    @SerializedName("global_limit_kib_per_sec")
+    public long globalLimitKibPerSec = 0;
+
+    // Cap for this instance alone, in KiB/s (0 = unlimited)
+    @SerializedName("run_limit_kib_per_sec")
+    public long runLimitKibPerSec = 0;
+
+    // How many KiB can be sent at full speed before the cap applies
+    @SerializedName("burst_kib")
+    public long burstKib = 1024;
+
+    // If this file exists (or -Dmodcontroller.serverRunning=true), the caps are reduced by the reserve
+    @SerializedName("server_running_flag")
+    public String serverRunningFlag = "modcontroller/server-running.flag";
+
+    @SerializedName("server_running_reserve_percent")
+    public int serverRunningReservePercent = 50;
+
+    public boolean isLimited() {
+        return globalLimitKibPerSec > 0 || runLimitKibPerSec > 0;
+    }
+}
@@ -0,0 +1,106 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for modcontroller.json and its include files. The "downloads" and "packs"
+ * arrays are bound one element at a time; the remaining (small) settings object is merged
+ * across files and bound once at the end, so later files override earlier settings.
+ */
+class ConfigReader {
+    private final Gson gson;
+    private final TypeAdapter<DownloadEntry> entryAdapter;
+    private final TypeAdapter<PackSource> packAdapter;
+
+    private final JsonObject settings = new JsonObject();
+    private final List<DownloadEntry> downloads = new ArrayList<>();
+    private final List<PackSource> packs = new ArrayList<>();
+
+    ConfigReader(Gson gson) {
+        this.gson = gson;
+        this.entryAdapter = gson.getAdapter(DownloadEntry.class);
+        this.packAdapter = gson.getAdapter(PackSource.class);
+    }
+
+    void read(Path file) throws IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                switch (key) {
+                    case "downloads" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) downloads.add(entryAdapter.read(reader));
+                        reader.endArray();
+                    }
+                    case "packs" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) packs.add(packAdapter.read(reader));
+                        reader.endArray();
+                    }
+                    default -> settings.add(key, gson.fromJson(reader, JsonElement.class));
+                }
+            }
+            reader.endObject();
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Failed to parse " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    ModConfig build() {
+        ModConfig config = gson.fromJson(settings, ModConfig.class);
+        config.downloads = downloads;
+        config.packs = packs;
+        return config;
+    }
+
+    static List<String> validate(ModConfig config) {
+        List<String> problems = new ArrayList<>();
+        for (int i = 0; i < config.downloads.size(); i++) {
+            DownloadEntry entry = config.downloads.get(i);
+            if (entry == null) {
+                problems.add("downloads[" + i + "] is null");
+                continue;
+            }
+            if (!entry.enabled) continue;
+            String label = "downloads[" + i + "] (" + entry.name + ")";
+            if (entry.sourceType == null) {
+                problems.add(label + ": unknown source_type");
+                continue;
+            }
+            if (isBlank(entry.destination)) problems.add(label + ": missing destination");
+            switch (entry.sourceType) {
+                case URL -> { if (isBlank(entry.url)) problems.add(label + ": missing url"); }
+                case MODRINTH -> { if (isBlank(entry.versionId)) problems.add(label + ": missing version_id"); }
+                case CURSEFORGE -> {
+                    if (isBlank(entry.projectId)) problems.add(label + ": missing project_id");
+                    if (isBlank(entry.fileId)) problems.add(label + ": missing file_id");
+                }
+            }
+        }
+        if (config.downloadOrder != null && !List.of("config", "largest_first", "critical_first").contains(config.downloadOrder)) {
+            problems.add("download_order must be \"config\", \"largest_first\" or \"critical_first\"");
+        }
+        for (PackSource pack : config.packs) {
+            if (pack.enabled && isBlank(pack.path)) problems.add("pack '" + pack.name + "': missing path");
+        }
+        return problems;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+}
@@ -0,0 +1,187 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of the fully parsed and validated config (including entries imported from packs).
+ * It is reused as long as every source file is unchanged: matching size and mtime is trusted
+ * directly, otherwise the file's SHA-256 is compared so a touched-but-identical file still hits.
+ */
+class ConfigSnapshot {
+    private static final String SNAPSHOT_FILE = "modcontroller/config.snapshot";
+    private static final int MAGIC = 0x4D43534E; // "MCSN"
+    static final int FORMAT_VERSION = 5;
+
+    // Settings are small and change shape over time, so they are stored as compact JSON
+    private static final Gson SETTINGS_GSON = new GsonBuilder()
+        .setExclusionStrategies(new ExclusionStrategy() {
+            @Override
+            public boolean shouldSkipField(FieldAttributes f) {
+                return f.getDeclaringClass() == ModConfig.class && f.getName().equals("downloads");
+            }
+
+            @Override
+            public boolean shouldSkipClass(Class<?> clazz) {
+                return false;
+            }
+        })
+        .create();
+
+    private static final class SourceStamp {
+        final String path;
+        final long modified;
+        final long size;
+        final String sha256;
+
+        SourceStamp(String path, long modified, long size, String sha256) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * Returns the cached config, or null if there is no usable snapshot for these config files.
+     */
+    static ModConfig read(Path gameDir, List<Path> configFiles) {
+        Path snapshotFile = gameDir.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshotFile)) return null;
+
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (header.readInt() != MAGIC || header.readInt() != FORMAT_VERSION) return null;
+            long expectedCrc = header.readLong();
+            byte[] payload = header.readNBytes(header.readInt());
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != expectedCrc) {
+                System.err.println("ModController: Config snapshot is corrupt, reparsing");
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            int sourceCount = in.readInt();
+            Set<String> recorded = new HashSet<>();
+            for (int i = 0; i < sourceCount; i++) {
+                SourceStamp stamp = new SourceStamp(in.readUTF(), in.readLong(), in.readLong(), in.readUTF());
+                if (!isUnchanged(gameDir, stamp)) return null;
+                recorded.add(stamp.path);
+            }
+            // A newly added include file is not covered by any stamp
+            for (Path file : configFiles) {
+                if (!recorded.contains(relativize(gameDir, file))) return null;
+            }
+
+            byte[] settings = in.readNBytes(in.readInt());
+            ModConfig config = SETTINGS_GSON.fromJson(new String(settings, StandardCharsets.UTF_8), ModConfig.class);
+            config.downloads = readEntries(in);
+            config.packDownloads = readEntries(in);
+            return config;
+        } catch (Exception e) {
+            System.err.println("ModController: Ignoring unreadable config snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    static void write(Path gameDir, ModConfig config, List<Path> sources) {
+        Path snapshotFile = gameDir.resolve(SNAPSHOT_FILE);
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+
+            out.writeInt(sources.size());
+            for (Path source : sources) {
+                out.writeUTF(relativize(gameDir, source));
+                out.writeLong(Files.getLastModifiedTime(source).toMillis());
+                out.writeLong(Files.size(source));
+                out.writeUTF(sha256(source));
+            }
+
+            byte[] settings = SETTINGS_GSON.toJson(config).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(settings.length);
+            out.write(settings);
+            writeEntries(out, config.downloads);
+            writeEntries(out, config.packDownloads);
+            out.flush();
+
+            byte[] payload = buffer.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            Files.createDirectories(snapshotFile.getParent());
+            Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (DataOutputStream file = new DataOutputStream(Files.newOutputStream(temp))) {
+                file.writeInt(MAGIC);
+                file.writeInt(FORMAT_VERSION);
+                file.writeLong(crc.getValue());
+                file.writeInt(payload.length);
+                file.write(payload);
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.err.println("ModController: Failed to write config snapshot: " + e.getMessage());
+        }
+    }
+
+    private static boolean isUnchanged(Path gameDir, SourceStamp stamp) throws Exception {
+        Path file = gameDir.resolve(stamp.path);
+        try {
+            long size = Files.size(file);
+            if (size != stamp.size) return false;
+            if (Files.getLastModifiedTime(file).toMillis() == stamp.modified) return true;
+            return sha256(file).equals(stamp.sha256);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static void writeEntries(DataOutputStream out, List<DownloadEntry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (DownloadEntry entry : entries) entry.writeTo(out);
+    }
+
+    private static List<DownloadEntry> readEntries(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<DownloadEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) entries.add(DownloadEntry.readFrom(in));
+        return entries;
+    }
+
+    private static String relativize(Path gameDir, Path file) {
+        return gameDir.toAbsolutePath().relativize(file.toAbsolutePath()).toString().replace('\\', '/');
+    }
+
+    private static String sha256(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) digest.update(buffer, 0, read);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
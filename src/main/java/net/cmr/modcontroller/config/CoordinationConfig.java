@@ -0,0 +1,17 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public class CoordinationConfig {
+    // Use file locks so instances on this machine fetch each artifact once and share it
+    @SerializedName("enabled")
+    public boolean enabled = true;
+
+    // Directory shared by all instances on the host (empty = <java.io.tmpdir>/modcontroller-artifacts)
+    @SerializedName("lock_dir")
+    public String lockDir = "";
+
+    // Longest wait for another instance before going ahead without the lock
+    @SerializedName("wait_timeout_ms")
+    public long waitTimeoutMs = 600_000;
+}
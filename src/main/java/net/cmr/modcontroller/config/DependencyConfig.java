@@ -0,0 +1,19 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public class DependencyConfig {
+    // Add the required dependencies of Modrinth entries that are not already configured or installed
+    @SerializedName("resolve")
+    public boolean resolve = false;
+
+    // Used to pick a version when a dependency names only a project, e.g. "1.21.1"
+    @SerializedName("game_version")
+    public String gameVersion = "";
+
+    @SerializedName("loader")
+    public String loader = "neoforge";
+
+    @SerializedName("destination")
+    public String destination = "mods/";
+}
@@ -2,6 +2,12 @@ package net.cmr.modcontroller.config;
 
 import com.google.gson.annotations.SerializedName;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 public class DownloadEntry {
     @SerializedName("name")
     public String name;
@@ -34,6 +40,37 @@ public class DownloadEntry {
     @SerializedName("sha512")
     public String sha512Hash; // Modrinth uses sha512
 
+    @SerializedName("size")
+    public long size = 0; // Expected size in bytes, 0 if unknown
+
+    @SerializedName("mirrors")
+    public List<String> mirrors; // Alternate URLs tried in order if the primary fails
+
+    @SerializedName("delta")
+    public boolean delta = false; // Patch an existing file using published block checksums
+
+    @SerializedName("delta_url")
+    public String deltaUrl; // Block map location, defaults to <download url>.blocks.json
+
+    // Archive extraction: destination is a folder the archive is unpacked into
+    @SerializedName("extract")
+    public boolean extract = false;
+
+    @SerializedName("archive_format")
+    public String archiveFormat; // "zip", "tar" or "tar.gz"; detected from the file name if unset
+
+    @SerializedName("strip_components")
+    public int stripComponents = 0; // Leading path segments dropped from each archive entry
+
+    @SerializedName("skip_unchanged")
+    public boolean skipUnchanged = true; // Leave extracted files alone if their content is identical
+
+    @SerializedName("phase")
+    public String phase; // "critical" or "deferred"; classified by destination if unset
+
+    @SerializedName("priority")
+    public int priority = 0; // Higher runs earlier under the "critical_first" download order
+
     @SerializedName("version_tag")
     public String versionTag; // Track version for updates
 
@@ -43,6 +80,9 @@ public class DownloadEntry {
     @SerializedName("enabled")
     public boolean enabled = true;
 
+    // Added by dependency resolution rather than configured; yields to a jar that provides the same mod
+    public transient boolean addedAsDependency;
+
     public enum SourceType {
         @SerializedName("url")
         URL,
@@ -81,4 +121,75 @@ public class DownloadEntry {
         entry.destination = destination;
         return entry;
     }
+
+    // Binary form used by ConfigSnapshot. Keep in sync with the fields above and
+    // bump ConfigSnapshot.FORMAT_VERSION whenever a field is added.
+    void writeTo(DataOutputStream out) throws IOException {
+        writeNullable(out, name);
+        writeNullable(out, sourceType != null ? sourceType.name() : null);
+        writeNullable(out, url);
+        writeNullable(out, projectId);
+        writeNullable(out, versionId);
+        writeNullable(out, fileId);
+        writeNullable(out, destination);
+        writeNullable(out, sha1Hash);
+        writeNullable(out, sha512Hash);
+        out.writeLong(size);
+        out.writeInt(mirrors != null ? mirrors.size() : -1);
+        if (mirrors != null) {
+            for (String mirror : mirrors) out.writeUTF(mirror);
+        }
+        out.writeBoolean(delta);
+        writeNullable(out, deltaUrl);
+        out.writeBoolean(extract);
+        writeNullable(out, archiveFormat);
+        out.writeInt(stripComponents);
+        out.writeBoolean(skipUnchanged);
+        writeNullable(out, phase);
+        out.writeInt(priority);
+        writeNullable(out, versionTag);
+        out.writeBoolean(replaceIfExists);
+        out.writeBoolean(enabled);
+    }
+
+    static DownloadEntry readFrom(DataInputStream in) throws IOException {
+        DownloadEntry entry = new DownloadEntry();
+        entry.name = readNullable(in);
+        String type = readNullable(in);
+        entry.sourceType = type != null ? SourceType.valueOf(type) : null;
+        entry.url = readNullable(in);
+        entry.projectId = readNullable(in);
+        entry.versionId = readNullable(in);
+        entry.fileId = readNullable(in);
+        entry.destination = readNullable(in);
+        entry.sha1Hash = readNullable(in);
+        entry.sha512Hash = readNullable(in);
+        entry.size = in.readLong();
+        int mirrorCount = in.readInt();
+        if (mirrorCount >= 0) {
+            entry.mirrors = new ArrayList<>(mirrorCount);
+            for (int i = 0; i < mirrorCount; i++) entry.mirrors.add(in.readUTF());
+        }
+        entry.delta = in.readBoolean();
+        entry.deltaUrl = readNullable(in);
+        entry.extract = in.readBoolean();
+        entry.archiveFormat = readNullable(in);
+        entry.stripComponents = in.readInt();
+        entry.skipUnchanged = in.readBoolean();
+        entry.phase = readNullable(in);
+        entry.priority = in.readInt();
+        entry.versionTag = readNullable(in);
+        entry.replaceIfExists = in.readBoolean();
+        entry.enabled = in.readBoolean();
+        return entry;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
 }
@@ -0,0 +1,25 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FleetConfig {
+    // Serve verified artifacts to other nodes over HTTP
+    @SerializedName("serve")
+    public boolean serve = false;
+
+    @SerializedName("bind_address")
+    public String bindAddress = "0.0.0.0";
+
+    @SerializedName("port")
+    public int port = 24480;
+
+    // Base URLs of peers (e.g. "http://10.0.0.5:24480") tried before the upstream URL
+    @SerializedName("peers")
+    public List<String> peers = new ArrayList<>();
+
+    @SerializedName("peer_timeout_ms")
+    public int peerTimeoutMs = 2000;
+}
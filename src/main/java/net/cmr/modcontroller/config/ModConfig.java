@@ -13,49 +13,166 @@ import java.util.List;
 public class ModConfig {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final String CONFIG_FILE = "config/modcontroller.json";
+    private static final String INCLUDE_DIR = "config/modcontroller.d";
 
     @SerializedName("downloads")
     public List<DownloadEntry> downloads = new ArrayList<>();
 
+    @SerializedName("packs")
+    public List<PackSource> packs = new ArrayList<>();
+
+    // Entries expanded from packs at load time; never written back to the config file
+    public transient List<DownloadEntry> packDownloads = new ArrayList<>();
+
+    // Set when a pack could not be read; its entries are missing from packDownloads, not removed
+    public transient boolean packImportFailed;
+
     @SerializedName("download_on_first_launch_only")
     public boolean downloadOnFirstLaunchOnly = true;
 
     @SerializedName("check_for_updates")
     public boolean checkForUpdates = true;
 
+    // While the config is unchanged, trust the last update check for this long (0 checks every launch)
+    @SerializedName("update_check_ttl_minutes")
+    public int updateCheckTtlMinutes = 0;
+
+    // Let entries outside mods/config folders finish downloading after mod discovery
+    @SerializedName("defer_non_critical_downloads")
+    public boolean deferNonCriticalDownloads = true;
+
+    // "config" (as listed), "largest_first" or "critical_first" (by priority, then size)
+    @SerializedName("download_order")
+    public String downloadOrder = "config";
+
     @SerializedName("backup_replaced_files")
     public boolean backupReplacedFiles = true;
 
+    // Delete files installed for entries that were removed from the config (modified files are kept)
+    @SerializedName("remove_orphaned_files")
+    public boolean removeOrphanedFiles = true;
+
+    @SerializedName("transfer")
+    public TransferConfig transfer = new TransferConfig();
+
+    @SerializedName("pipeline")
+    public PipelineConfig pipeline = new PipelineConfig();
+
+    @SerializedName("preflight")
+    public PreflightConfig preflight = new PreflightConfig();
+
+    @SerializedName("backups")
+    public BackupConfig backups = new BackupConfig();
+
     @SerializedName("require_consent_before_downloads")
     public boolean requireConsentBeforeDownloads = true;
 
+    @SerializedName("bandwidth")
+    public BandwidthConfig bandwidth = new BandwidthConfig();
+
+    @SerializedName("fleet")
+    public FleetConfig fleet = new FleetConfig();
+
+    @SerializedName("coordination")
+    public CoordinationConfig coordination = new CoordinationConfig();
+
+    @SerializedName("dependencies")
+    public DependencyConfig dependencies = new DependencyConfig();
+
     @SerializedName("modrinth_api_key")
     public String modrinthApiKey = ""; // Optional, for rate limit increases
 
     @SerializedName("curseforge_api_key")
     public String curseforgeApiKey = ""; // Required for CurseForge API
 
-    public static ModConfig load(Path gameDir) {
+    /**
+     * Loads modcontroller.json plus any *.json files in config/modcontroller.d/ (in name order).
+     * Parse or validation errors are thrown rather than replaced with defaults, so a typo can
+     * never turn into an unexpected download run.
+     */
+    public static ModConfig load(Path gameDir) throws IOException {
         Path configFile = gameDir.resolve(CONFIG_FILE);
 
-        try {
-            if (!Files.exists(configFile)) {
-                System.out.println("ModController: Config not found, creating default...");
-                ModConfig defaultConfig = createDefault();
-                defaultConfig.save(gameDir);
-                return defaultConfig;
+        if (!Files.exists(configFile)) {
+            System.out.println("ModController: Config not found, creating default...");
+            ModConfig defaultConfig = createDefault();
+            defaultConfig.save(gameDir);
+            return defaultConfig;
+        }
+
+        List<Path> configFiles = configFiles(gameDir);
+        ModConfig cached = ConfigSnapshot.read(gameDir, configFiles);
+        if (cached != null) {
+            System.out.println("ModController: Config loaded from snapshot with " + cached.downloads.size() +
+                               " entries (" + cached.packDownloads.size() + " from packs)");
+            return cached;
+        }
+
+        ConfigReader reader = new ConfigReader(GSON);
+        for (Path file : configFiles) {
+            reader.read(file);
+        }
+        ModConfig config = reader.build();
+
+        List<String> problems = ConfigReader.validate(config);
+        if (!problems.isEmpty()) {
+            System.err.println("ModController: Config is invalid:");
+            for (String problem : problems) System.err.println("  " + problem);
+            throw new IOException("Config has " + problems.size() + " problem(s), see log");
+        }
+        System.out.println("ModController: Config loaded with " + config.downloads.size() + " entries" +
+                           (configFiles.size() > 1 ? " from " + configFiles.size() + " files" : ""));
+
+        if (config.importPacks(gameDir)) {
+            List<Path> sources = new ArrayList<>(configFiles);
+            for (PackSource pack : config.packs) {
+                if (pack.enabled) sources.add(gameDir.resolve(pack.path));
+            }
+            ConfigSnapshot.write(gameDir, config, sources);
+        }
+        return config;
+    }
+
+    private static List<Path> configFiles(Path gameDir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        files.add(gameDir.resolve(CONFIG_FILE));
+        Path includeDir = gameDir.resolve(INCLUDE_DIR);
+        if (Files.isDirectory(includeDir)) {
+            try (var stream = Files.list(includeDir)) {
+                stream.filter(p -> p.getFileName().toString().endsWith(".json"))
+                      .sorted()
+                      .forEach(files::add);
             }
+        }
+        return files;
+    }
 
-            String json = Files.readString(configFile);
-            ModConfig config = GSON.fromJson(json, ModConfig.class);
-            System.out.println("ModController: Config loaded with " + config.downloads.size() + " entries");
-            return config;
+    public List<DownloadEntry> allDownloads() {
+        if (packDownloads == null || packDownloads.isEmpty()) return downloads;
+        List<DownloadEntry> all = new ArrayList<>(downloads.size() + packDownloads.size());
+        all.addAll(downloads);
+        all.addAll(packDownloads);
+        return all;
+    }
 
-        } catch (Exception e) {
-            System.err.println("ModController: Failed to load config, using default");
-            e.printStackTrace();
-            return createDefault();
+    // Returns false if any pack failed to import, so a partial result is never snapshotted
+    private boolean importPacks(Path gameDir) {
+        packDownloads = new ArrayList<>();
+        if (packs == null) return true;
+        boolean ok = true;
+        for (PackSource pack : packs) {
+            if (!pack.enabled) continue;
+            try {
+                List<DownloadEntry> imported = PackImporter.importPack(pack, gameDir);
+                packDownloads.addAll(imported);
+                System.out.println("ModController: Imported " + imported.size() + " entries from pack '" + pack.name + "'");
+            } catch (Exception e) {
+                System.err.println("ModController: Failed to import pack '" + pack.name + "': " + e.getMessage());
+                ok = false;
+                packImportFailed = true;
+            }
         }
+        return ok;
     }
 
     public void save(Path gameDir) throws IOException {
@@ -0,0 +1,204 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Expands pack indexes into {@link DownloadEntry} lists using a streaming JSON reader,
+ * so only one file record is held in memory at a time regardless of pack size.
+ */
+public class PackImporter {
+    private static final String MRPACK_INDEX = "modrinth.index.json";
+    private static final String CURSEFORGE_MANIFEST = "manifest.json";
+
+    public static List<DownloadEntry> importPack(PackSource pack, Path gameDir) throws IOException {
+        if (pack.path == null || pack.path.isBlank()) {
+            throw new IOException("Pack '" + pack.name + "' has no path");
+        }
+        Path file = gameDir.resolve(pack.path);
+        if (!Files.exists(file)) {
+            throw new IOException("Pack file not found: " + file);
+        }
+
+        String indexName = pack.type == PackSource.PackType.CURSEFORGE ? CURSEFORGE_MANIFEST : MRPACK_INDEX;
+        String lower = file.getFileName().toString().toLowerCase();
+
+        // .mrpack and CurseForge pack zips carry the index as a zip entry; plain .json is read directly
+        if (lower.endsWith(".mrpack") || lower.endsWith(".zip")) {
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                ZipEntry index = zip.getEntry(indexName);
+                if (index == null) {
+                    throw new IOException("Pack archive " + file.getFileName() + " has no " + indexName);
+                }
+                try (InputStream in = zip.getInputStream(index)) {
+                    return read(pack, in);
+                }
+            }
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(pack, in);
+        }
+    }
+
+    private static List<DownloadEntry> read(PackSource pack, InputStream in) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            List<DownloadEntry> entries = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"files".equals(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    DownloadEntry entry = pack.type == PackSource.PackType.CURSEFORGE
+                        ? readCurseForgeFile(pack, reader)
+                        : readMrpackFile(pack, reader);
+                    if (entry != null) entries.add(entry);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+            return entries;
+        }
+    }
+
+    // {"path": "...", "hashes": {"sha1": "...", "sha512": "..."}, "env": {...}, "downloads": [...], "fileSize": n}
+    private static DownloadEntry readMrpackFile(PackSource pack, JsonReader reader) throws IOException {
+        DownloadEntry entry = new DownloadEntry();
+        entry.sourceType = DownloadEntry.SourceType.URL;
+        String path = null;
+        String clientEnv = "required";
+        String serverEnv = "required";
+        List<String> urls = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "path" -> path = reader.nextString();
+                case "fileSize" -> entry.size = reader.nextLong();
+                case "hashes" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "sha1" -> entry.sha1Hash = reader.nextString();
+                            case "sha512" -> entry.sha512Hash = reader.nextString();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                case "env" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "client" -> clientEnv = reader.nextString();
+                            case "server" -> serverEnv = reader.nextString();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                case "downloads" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) urls.add(reader.nextString());
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (path == null || urls.isEmpty()) {
+            System.err.println("ModController: Skipping malformed file record in pack '" + pack.name + "'");
+            return null;
+        }
+        if (!isSafeRelativePath(path)) {
+            System.err.println("ModController: Skipping unsafe pack path '" + path + "' in pack '" + pack.name + "'");
+            return null;
+        }
+
+        String env = switch (pack.side.toLowerCase()) {
+            case "client" -> clientEnv;
+            case "server" -> serverEnv;
+            default -> "unsupported".equals(clientEnv) ? serverEnv : clientEnv;
+        };
+        if ("unsupported".equals(env)) return null;
+        if ("optional".equals(env) && !pack.includeOptional) return null;
+
+        entry.name = pack.name + ": " + path;
+        entry.destination = joinDestination(pack.destination, path);
+        entry.url = urls.get(0);
+        if (urls.size() > 1) entry.mirrors = new ArrayList<>(urls.subList(1, urls.size()));
+        entry.replaceIfExists = pack.replaceIfExists;
+        return entry;
+    }
+
+    // {"projectID": n, "fileID": n, "required": bool}
+    private static DownloadEntry readCurseForgeFile(PackSource pack, JsonReader reader) throws IOException {
+        String projectId = null;
+        String fileId = null;
+        boolean required = true;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "projectID" -> projectId = readIdString(reader);
+                case "fileID" -> fileId = readIdString(reader);
+                case "required" -> required = reader.nextBoolean();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (projectId == null || fileId == null) {
+            System.err.println("ModController: Skipping malformed file record in pack '" + pack.name + "'");
+            return null;
+        }
+        if (!required && !pack.includeOptional) return null;
+
+        // CurseForge manifests carry no URLs or hashes, so these still resolve through the API.
+        // The trailing slash tells FileDownloader to use the resolved file name.
+        DownloadEntry entry = DownloadEntry.forCurseForge(
+            pack.name + ": " + projectId + "/" + fileId,
+            projectId,
+            fileId,
+            joinDestination(pack.destination, "mods/")
+        );
+        entry.replaceIfExists = pack.replaceIfExists;
+        return entry;
+    }
+
+    private static String readIdString(JsonReader reader) throws IOException {
+        // IDs are numbers in the manifest; nextString() accepts both numbers and strings
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static String joinDestination(String base, String path) {
+        if (base == null || base.isBlank()) return path;
+        return base.endsWith("/") ? base + path : base + "/" + path;
+    }
+
+    private static boolean isSafeRelativePath(String path) {
+        if (path.startsWith("/") || path.startsWith("\\") || path.contains(":")) return false;
+        for (String part : path.split("[/\\\\]")) {
+            if (part.equals("..")) return false;
+        }
+        return true;
+    }
+}
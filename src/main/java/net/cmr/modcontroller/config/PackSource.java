@@ -0,0 +1,43 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A modpack index (Modrinth .mrpack / modrinth.index.json or a CurseForge manifest.json)
+ * whose file list is expanded into download entries when the config is loaded.
+ */
+public class PackSource {
+    @SerializedName("name")
+    public String name;
+
+    @SerializedName("type")
+    public PackType type = PackType.MRPACK;
+
+    // Path to the pack file, relative to the game directory
+    @SerializedName("path")
+    public String path;
+
+    // Folder (relative to the game directory) that pack paths are placed under
+    @SerializedName("destination")
+    public String destination = "";
+
+    // "client", "server" or "any"; files unsupported on this side are skipped (mrpack only)
+    @SerializedName("side")
+    public String side = "any";
+
+    @SerializedName("include_optional")
+    public boolean includeOptional = true;
+
+    @SerializedName("replace_if_exists")
+    public boolean replaceIfExists = true;
+
+    @SerializedName("enabled")
+    public boolean enabled = true;
+
+    public enum PackType {
+        @SerializedName("mrpack")
+        MRPACK,
+        @SerializedName("curseforge")
+        CURSEFORGE
+    }
+}
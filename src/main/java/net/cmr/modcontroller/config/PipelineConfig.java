@@ -0,0 +1,21 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public class PipelineConfig {
+    // Threads looking up download URLs and hashes ahead of the transfers
+    @SerializedName("resolve_workers")
+    public int resolveWorkers = 4;
+
+    // Concurrent transfers; 1 keeps a single download at a time
+    @SerializedName("transfer_workers")
+    public int transferWorkers = 2;
+
+    // Threads hashing and installing finished transfers
+    @SerializedName("install_workers")
+    public int installWorkers = 2;
+
+    // How many entries each stage may run ahead of the next one
+    @SerializedName("queue_capacity")
+    public int queueCapacity = 4;
+}
@@ -0,0 +1,25 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public class PreflightConfig {
+    // Resolve every entry, check disk space and probe hosts before anything is changed
+    @SerializedName("enabled")
+    public boolean enabled = true;
+
+    // Stop the run when there is not enough disk space, instead of only reporting it
+    @SerializedName("abort_on_problems")
+    public boolean abortOnProblems = true;
+
+    // Also stop when an entry cannot be resolved or none of its hosts answers. Otherwise an entry that
+    // cannot be resolved fails on its own, and one whose hosts do not answer is still tried
+    @SerializedName("abort_on_unavailable_entries")
+    public boolean abortOnUnavailableEntries = false;
+
+    // Extra free space kept on each filesystem beyond what the run needs
+    @SerializedName("reserve_mb")
+    public long reserveMb = 64;
+
+    @SerializedName("probe_timeout_ms")
+    public int probeTimeoutMs = 3000;
+}
@@ -0,0 +1,34 @@
+package net.cmr.modcontroller.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public class TransferConfig {
+    @SerializedName("connect_timeout_ms")
+    public int connectTimeoutMs = 10000;
+
+    // Longest wait for any data on an open connection
+    @SerializedName("read_timeout_ms")
+    public int readTimeoutMs = 30000;
+
+    // A transfer slower than this many KiB/s over a whole stall window is aborted and retried (0 = off)
+    @SerializedName("stall_min_kib_per_sec")
+    public long stallMinKibPerSec = 8;
+
+    @SerializedName("stall_window_ms")
+    public int stallWindowMs = 20000;
+
+    // Extra rounds over the URL and its mirrors after the first one fails
+    @SerializedName("retries")
+    public int retries = 2;
+
+    // Start a second request when a transfer is slow; whichever finishes first is kept
+    @SerializedName("hedge")
+    public boolean hedge = false;
+
+    // A transfer is slow if, after this long, it is below this percentile of earlier transfers' speeds
+    @SerializedName("hedge_delay_ms")
+    public int hedgeDelayMs = 3000;
+
+    @SerializedName("hedge_percentile")
+    public int hedgePercentile = 10;
+}
@@ -0,0 +1,422 @@
+package net.cmr.modcontroller.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts a zip or tar(.gz) archive straight from the download stream. Entries are inflated on
+ * the reading thread as they arrive (a streamed archive can only be inflated in order); comparing
+ * against existing files and writing them out runs on a small worker pool, bounded by
+ * {@link #MAX_BUFFERED_BYTES} so memory stays flat for large bundles. Changed files are written
+ * to a staging directory and only moved into the target by {@link #commit} once the caller has
+ * verified the archive. When several entries map to the same file, the last one wins.
+ */
+class ArchiveExtractor {
+    private static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+    // Entries larger than this are streamed to disk on the reading thread instead of buffered
+    private static final int MAX_BUFFERED_ENTRY = 4 * 1024 * 1024;
+
+    static final class Stats {
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicInteger unchanged = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+    }
+
+    private final Path targetDir;
+    private final Path stagingDir;
+    private final int stripComponents;
+    private final boolean skipUnchanged;
+    private final Stats stats = new Stats();
+    private final ExecutorService writers;
+    private final Semaphore buffered = new Semaphore((int) (MAX_BUFFERED_BYTES / 1024));
+    private final List<Future<?>> pending = new ArrayList<>();
+    private final Map<Path, Integer> placed = new HashMap<>(); // Staged file -> index of the entry it holds
+    private int entryIndex;
+
+    private ArchiveExtractor(Path targetDir, Path stagingDir, int stripComponents, boolean skipUnchanged) {
+        this.targetDir = targetDir.toAbsolutePath().normalize();
+        this.stagingDir = stagingDir.toAbsolutePath().normalize();
+        this.stripComponents = stripComponents;
+        this.skipUnchanged = skipUnchanged;
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.writers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ModController-Extract");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static String detectFormat(String configured, String filename) {
+        if (configured != null && !configured.isBlank()) return configured.toLowerCase();
+        String lower = filename == null ? "" : filename.toLowerCase();
+        if (lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) return "tar.gz";
+        if (lower.endsWith(".tar")) return "tar";
+        return "zip";
+    }
+
+    /**
+     * Extracts into {@code stagingDir} everything that differs from what is in {@code targetDir}.
+     */
+    static Stats extract(InputStream in, String format, Path targetDir, Path stagingDir, int stripComponents,
+                         boolean skipUnchanged) throws IOException {
+        ArchiveExtractor extractor = new ArchiveExtractor(targetDir, stagingDir, stripComponents, skipUnchanged);
+        try {
+            Files.createDirectories(extractor.stagingDir);
+            switch (format) {
+                case "zip" -> extractor.readZip(in);
+                case "tar" -> extractor.readTar(in);
+                case "tar.gz", "tgz" -> extractor.readTar(new GZIPInputStream(in, 64 * 1024));
+                default -> throw new IOException("Unsupported archive format: " + format);
+            }
+            extractor.awaitWriters();
+            return extractor.stats;
+        } finally {
+            extractor.writers.shutdownNow();
+        }
+    }
+
+    private void readZip(InputStream in) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            handleEntry(entry.getName(), entry.isDirectory(), entry.getSize(), zip);
+        }
+    }
+
+    private void readTar(InputStream in) throws IOException {
+        TarReader tar = new TarReader(in);
+        TarReader.Entry entry;
+        while ((entry = tar.next()) != null) {
+            if (entry.isFile() || entry.isDirectory()) {
+                handleEntry(entry.name, entry.isDirectory(), entry.size, tar.content());
+            } else {
+                System.out.println("  Skipping non-regular archive entry: " + entry.name);
+                stats.rejected.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Moves staged files and folders into the target, replacing what is there.
+     */
+    static void commit(Path stagingDir, Path targetDir) throws IOException {
+        List<Path> staged;
+        try (var stream = Files.walk(stagingDir)) {
+            staged = stream.sorted().toList(); // Parents before children
+        }
+        for (Path source : staged) {
+            Path target = targetDir.resolve(stagingDir.relativize(source).toString());
+            if (Files.isDirectory(source)) {
+                Files.createDirectories(target);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    static void deleteStaging(Path stagingDir) {
+        if (!Files.exists(stagingDir)) return;
+        try (var stream = Files.walk(stagingDir)) {
+            for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to clean up " + stagingDir + ": " + e.getMessage());
+        }
+    }
+
+    private void handleEntry(String name, boolean directory, long size, InputStream content) throws IOException {
+        Path target = resolveSafely(name);
+        if (target == null) return;
+        Path staged = stagingDir.resolve(targetDir.relativize(target).toString());
+        int index = entryIndex++;
+
+        if (directory) {
+            Files.createDirectories(staged);
+            return;
+        }
+        Files.createDirectories(staged.getParent());
+
+        if (size >= 0 && size <= MAX_BUFFERED_ENTRY) {
+            byte[] data = content.readNBytes((int) size);
+            submit(target, staged, index, data);
+        } else if (size < 0) {
+            // Unknown size (zip data descriptor): buffer up to the limit, then stream the rest
+            byte[] head = content.readNBytes(MAX_BUFFERED_ENTRY + 1);
+            if (head.length <= MAX_BUFFERED_ENTRY) {
+                submit(target, staged, index, head);
+            } else {
+                writeStreaming(target, staged, index, head, content);
+            }
+        } else {
+            writeStreaming(target, staged, index, new byte[0], content);
+        }
+    }
+
+    private void submit(Path target, Path staged, int index, byte[] data) throws IOException {
+        int permits = Math.max(1, data.length / 1024);
+        try {
+            buffered.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting", e);
+        }
+        pending.add(writers.submit(() -> {
+            try {
+                if (skipUnchanged && sameContent(target, data)) {
+                    place(staged, index, null);
+                    stats.unchanged.incrementAndGet();
+                    return null;
+                }
+                Path temp = tempFor(staged);
+                Files.write(temp, data);
+                place(staged, index, temp);
+                stats.written.incrementAndGet();
+                return null;
+            } finally {
+                buffered.release(permits);
+            }
+        }));
+    }
+
+    private void writeStreaming(Path target, Path staged, int index, byte[] head, InputStream rest) throws IOException {
+        Path temp = tempFor(staged);
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            out.write(head);
+            rest.transferTo(out);
+        }
+        if (skipUnchanged && sameContent(target, temp)) {
+            Files.delete(temp);
+            place(staged, index, null);
+            stats.unchanged.incrementAndGet();
+            return;
+        }
+        place(staged, index, temp);
+        stats.written.incrementAndGet();
+    }
+
+    // Each write gets its own temp file, so entries that map to the same file never share one
+    private static Path tempFor(Path staged) throws IOException {
+        return Files.createTempFile(staged.getParent(), staged.getFileName().toString(), ".extract.tmp");
+    }
+
+    // Puts an entry's content (null: the existing file is already right) in place unless a later entry got there first
+    private void place(Path staged, int index, Path temp) throws IOException {
+        synchronized (placed) {
+            Integer previous = placed.get(staged);
+            if (previous != null && previous > index) {
+                if (temp != null) Files.deleteIfExists(temp);
+                return;
+            }
+            placed.put(staged, index);
+            if (temp != null) Files.move(temp, staged, StandardCopyOption.REPLACE_EXISTING);
+            else Files.deleteIfExists(staged);
+        }
+    }
+
+    private void awaitWriters() throws IOException {
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while extracting", e);
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new IOException("Failed to write extracted file: " + cause.getMessage(), cause);
+            }
+        }
+    }
+
+    // Maps an archive path into targetDir, or returns null if it must not be written
+    private Path resolveSafely(String name) {
+        String normalized = name.replace('\\', '/');
+        while (normalized.startsWith("./")) normalized = normalized.substring(2);
+
+        String[] parts = Arrays.stream(normalized.split("/")).filter(p -> !p.isEmpty()).toArray(String[]::new);
+        if (parts.length <= stripComponents) return null;
+        String relative = String.join("/", Arrays.copyOfRange(parts, stripComponents, parts.length));
+
+        if (normalized.startsWith("/") || relative.contains(":")) {
+            System.err.println("  Rejected absolute archive path: " + name);
+            stats.rejected.incrementAndGet();
+            return null;
+        }
+        Path target = targetDir.resolve(relative).normalize();
+        if (!target.startsWith(targetDir) || target.equals(targetDir)) {
+            System.err.println("  Rejected archive path outside target folder: " + name);
+            stats.rejected.incrementAndGet();
+            return null;
+        }
+        return target;
+    }
+
+    private static boolean sameContent(Path existing, byte[] data) throws IOException {
+        if (!Files.isRegularFile(existing) || Files.size(existing) != data.length) return false;
+        return Arrays.equals(Files.readAllBytes(existing), data);
+    }
+
+    private static boolean sameContent(Path existing, Path candidate) throws IOException {
+        if (!Files.isRegularFile(existing) || Files.size(existing) != Files.size(candidate)) return false;
+        return Files.mismatch(existing, candidate) == -1;
+    }
+
+    /**
+     * Minimal ustar reader with GNU long-name and pax path support.
+     */
+    static final class TarReader {
+        private static final int BLOCK = 512;
+
+        static final class Entry {
+            String name;
+            long size;
+            char type;
+
+            boolean isFile() { return type == '0' || type == '\0' || type == '7'; }
+            boolean isDirectory() { return type == '5'; }
+        }
+
+        private final InputStream in;
+        private long remaining;
+        private long padding;
+
+        TarReader(InputStream in) {
+            this.in = in;
+        }
+
+        Entry next() throws IOException {
+            skipRest();
+            String longName = null;
+            while (true) {
+                byte[] header = in.readNBytes(BLOCK);
+                if (header.length < BLOCK || isZeroBlock(header)) return null;
+
+                Entry entry = new Entry();
+                entry.type = (char) header[156];
+                entry.size = parseNumber(header, 124, 12);
+                entry.name = parseString(header, 0, 100);
+                if ("ustar".equals(parseString(header, 257, 5))) {
+                    String prefix = parseString(header, 345, 155);
+                    if (!prefix.isEmpty()) entry.name = prefix + "/" + entry.name;
+                }
+
+                remaining = entry.size;
+                padding = (BLOCK - (entry.size % BLOCK)) % BLOCK;
+
+                if (entry.type == 'L') {
+                    longName = trimNul(new String(readBody(), StandardCharsets.UTF_8));
+                    continue;
+                }
+                if (entry.type == 'x') {
+                    String paxPath = paxPath(new String(readBody(), StandardCharsets.UTF_8));
+                    if (paxPath != null) longName = paxPath;
+                    continue;
+                }
+                if (entry.type == 'g') {
+                    readBody();
+                    continue;
+                }
+                if (longName != null) entry.name = longName;
+                return entry;
+            }
+        }
+
+        InputStream content() {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    if (remaining <= 0) return -1;
+                    int b = in.read();
+                    if (b >= 0) remaining--;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (remaining <= 0) return -1;
+                    int read = in.read(b, off, (int) Math.min(len, remaining));
+                    if (read > 0) remaining -= read;
+                    return read;
+                }
+            };
+        }
+
+        // Reads a metadata entry's body, leaving the stream at the next header
+        private byte[] readBody() throws IOException {
+            byte[] body = in.readNBytes((int) remaining);
+            in.skipNBytes(padding);
+            remaining = 0;
+            padding = 0;
+            return body;
+        }
+
+        private void skipRest() throws IOException {
+            in.skipNBytes(remaining + padding);
+            remaining = 0;
+            padding = 0;
+        }
+
+        private static String paxPath(String records) {
+            // Records look like "<len> key=value\n"
+            for (String line : records.split("\n")) {
+                int space = line.indexOf(' ');
+                if (space < 0) continue;
+                String record = line.substring(space + 1);
+                if (record.startsWith("path=")) return record.substring(5);
+            }
+            return null;
+        }
+
+        private static boolean isZeroBlock(byte[] block) {
+            for (byte b : block) if (b != 0) return false;
+            return true;
+        }
+
+        private static String parseString(byte[] header, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && header[end] != 0) end++;
+            return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        private static String trimNul(String s) {
+            int nul = s.indexOf('\0');
+            return nul >= 0 ? s.substring(0, nul) : s;
+        }
+
+        private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+            if ((header[offset] & 0x80) != 0) {
+                // GNU base-256 encoding for sizes over 8 GB
+                long value = header[offset] & 0x7F;
+                for (int i = 1; i < length; i++) value = (value << 8) | (header[offset + i] & 0xFF);
+                return value;
+            }
+            String octal = parseString(header, offset, length).trim();
+            if (octal.isEmpty()) return 0;
+            try {
+                return Long.parseLong(octal, 8);
+            } catch (NumberFormatException e) {
+                throw new IOException("Corrupt tar header field: " + octal);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hash-addressed record of artifacts this node has downloaded and verified, keyed by
+ * "sha1:&lt;hex&gt;" or "sha512:&lt;hex&gt;". Used by {@link ArtifactServer} to serve peers.
+ */
+public class ArtifactIndex {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String INDEX_FILE = "modcontroller/artifact-index.json";
+
+    public static final class Artifact {
+        public String path; // Relative to the game directory
+        public long size;
+
+        Artifact(String path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    private final Path gameDir;
+    private final Map<String, Artifact> artifacts;
+    private boolean dirty;
+
+    private ArtifactIndex(Path gameDir, Map<String, Artifact> artifacts) {
+        this.gameDir = gameDir.toAbsolutePath().normalize();
+        this.artifacts = artifacts;
+    }
+
+    public static ArtifactIndex load(Path gameDir) {
+        Path file = gameDir.resolve(INDEX_FILE);
+        Map<String, Artifact> artifacts = new HashMap<>();
+        if (Files.exists(file)) {
+            try {
+                Map<String, Artifact> read = GSON.fromJson(Files.readString(file),
+                    new TypeToken<Map<String, Artifact>>() {}.getType());
+                if (read != null) artifacts.putAll(read);
+            } catch (Exception e) {
+                System.err.println("ModController: Ignoring unreadable artifact index: " + e.getMessage());
+            }
+        }
+        return new ArtifactIndex(gameDir, artifacts);
+    }
+
+    public static String key(String hashType, String hash) {
+        String algo = hashType.replace("-", "").toLowerCase();
+        return algo + ":" + hash.toLowerCase();
+    }
+
+    public synchronized void record(String hashType, String hash, Path file) {
+        try {
+            String relative = gameDir.relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+            artifacts.put(key(hashType, hash), new Artifact(relative, Files.size(file)));
+            dirty = true;
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to index " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The file for a hash key, or null if unknown or the file no longer looks like the recorded one.
+     */
+    public synchronized Path lookup(String key) {
+        Artifact artifact = artifacts.get(key);
+        if (artifact == null) return null;
+        Path file = gameDir.resolve(artifact.path).normalize();
+        try {
+            if (!file.startsWith(gameDir) || !Files.isRegularFile(file) || Files.size(file) != artifact.size) return null;
+        } catch (IOException e) {
+            return null;
+        }
+        return file;
+    }
+
+    public synchronized int size() {
+        return artifacts.size();
+    }
+
+    public synchronized void save() {
+        if (!dirty) return;
+        Path file = gameDir.resolve(INDEX_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(artifacts));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to save artifact index: " + e.getMessage());
+        }
+    }
+}
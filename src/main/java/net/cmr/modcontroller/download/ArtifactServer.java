@@ -0,0 +1,89 @@
+package net.cmr.modcontroller.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.cmr.modcontroller.config.FleetConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+
+/**
+ * Small HTTP server that lets other nodes fetch artifacts this node already verified:
+ * {@code GET /artifacts/<sha1|sha512>/<hex>}. Only files present in the {@link ArtifactIndex}
+ * can be served, and peers still verify the hash of everything they receive.
+ */
+public class ArtifactServer {
+    private static final String PREFIX = "/artifacts/";
+
+    private final ArtifactIndex index;
+    private final HttpServer server;
+
+    private ArtifactServer(ArtifactIndex index, HttpServer server) {
+        this.index = index;
+        this.server = server;
+    }
+
+    public static ArtifactServer start(FleetConfig config, ArtifactIndex index) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(config.bindAddress, config.port), 0);
+        ArtifactServer artifactServer = new ArtifactServer(index, server);
+        server.createContext(PREFIX, artifactServer::handle);
+        server.setExecutor(Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "ModController-ArtifactServer");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+        System.out.println("ModController: Serving " + index.size() + " artifact(s) on " +
+                           config.bindAddress + ":" + server.getAddress().getPort());
+        return artifactServer;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // /artifacts/<algo>/<hash>
+            String[] parts = exchange.getRequestURI().getPath().substring(PREFIX.length()).split("/");
+            if (parts.length != 2 || !parts[1].matches("[0-9a-fA-F]+")) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            Path file = index.lookup(parts[0].toLowerCase() + ":" + parts[1].toLowerCase());
+            if (file == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            long size = Files.size(file);
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            if ("HEAD".equals(method)) {
+                exchange.getResponseHeaders().add("Content-Length", Long.toString(size));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, size);
+            try (InputStream in = Files.newInputStream(file); OutputStream out = exchange.getResponseBody()) {
+                in.transferTo(out);
+            }
+        } catch (IOException e) {
+            System.err.println("ModController: Artifact request failed: " + e.getMessage());
+        }
+    }
+}
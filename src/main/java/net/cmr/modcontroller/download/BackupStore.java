@@ -0,0 +1,143 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.BackupConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the previous version of replaced files in a .modcontroller-backups folder next to them.
+ * Replacements always land by moving a new file over the old one, never by writing in place,
+ * so a hardlink to the old file is a complete backup that costs no extra I/O. Where links are
+ * unavailable a reflink copy is tried, then a plain copy.
+ */
+class BackupStore {
+    private static final String BACKUP_DIR = ".modcontroller-backups";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern BACKUP_NAME = Pattern.compile("(.+)\\.(\\d{8}-\\d{6})\\.backup");
+    private static final boolean REFLINK_AVAILABLE = System.getProperty("os.name", "").toLowerCase().contains("linux");
+
+    private final int keepPerFile;
+    private final long maxFolderBytes;
+
+    BackupStore(BackupConfig config) {
+        BackupConfig settings = config != null ? config : new BackupConfig();
+        this.keepPerFile = settings.keepPerFile;
+        this.maxFolderBytes = settings.maxFolderMb * 1024 * 1024;
+    }
+
+    void backup(Path file) throws IOException {
+        String timestamp = LocalDateTime.now().format(TIMESTAMP);
+        Path backupDir = file.getParent().resolve(BACKUP_DIR);
+        Files.createDirectories(backupDir);
+        String filename = file.getFileName().toString();
+        Path backupPath = backupDir.resolve(filename + "." + timestamp + ".backup");
+        Files.deleteIfExists(backupPath);
+
+        String method;
+        if (tryLink(file, backupPath)) {
+            method = "hardlink";
+        } else if (tryReflink(file, backupPath)) {
+            method = "reflink";
+        } else {
+            Files.copy(file, backupPath, StandardCopyOption.REPLACE_EXISTING);
+            method = "copy";
+        }
+        System.out.println("  Backed up existing file to: " + backupPath.getFileName() + " (" + method + ")");
+        prune(backupDir, filename);
+    }
+
+    private static boolean tryLink(Path file, Path backupPath) {
+        try {
+            Files.createLink(backupPath, file);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    // Copy-on-write clone on filesystems that support it (btrfs, xfs, ...); fails fast elsewhere
+    private static boolean tryReflink(Path file, Path backupPath) {
+        if (!REFLINK_AVAILABLE) return false;
+        try {
+            Process process = new ProcessBuilder("cp", "--reflink=always", file.toString(), backupPath.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0) return true;
+            process.destroyForcibly();
+        } catch (IOException e) {
+            // No cp on the path
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try { Files.deleteIfExists(backupPath); } catch (IOException ignored) {}
+        return false;
+    }
+
+    private void prune(Path backupDir, String filename) {
+        try {
+            List<Backup> backups = new ArrayList<>();
+            try (var stream = Files.list(backupDir)) {
+                for (Path path : (Iterable<Path>) stream::iterator) {
+                    Matcher m = BACKUP_NAME.matcher(path.getFileName().toString());
+                    if (m.matches()) backups.add(new Backup(path, m.group(1), m.group(2), Files.size(path)));
+                }
+            }
+            backups.sort(Comparator.comparing((Backup b) -> b.timestamp).reversed()); // newest first
+
+            List<Backup> kept = new ArrayList<>();
+            int sameFile = 0;
+            for (Backup backup : backups) {
+                if (backup.original.equals(filename) && keepPerFile > 0 && ++sameFile > keepPerFile) {
+                    delete(backup);
+                } else {
+                    kept.add(backup);
+                }
+            }
+
+            if (maxFolderBytes <= 0) return;
+            long total = 0;
+            for (Backup backup : kept) {
+                total += backup.size;
+                // The backup just made is always kept, even if it alone exceeds the cap
+                if (total > maxFolderBytes && backup != kept.get(0)) delete(backup);
+            }
+        } catch (IOException e) {
+            System.err.println("  Failed to prune backups in " + backupDir + ": " + e.getMessage());
+        }
+    }
+
+    private static void delete(Backup backup) {
+        try {
+            Files.deleteIfExists(backup.path);
+            System.out.println("  Pruned old backup: " + backup.path.getFileName());
+        } catch (IOException e) {
+            System.err.println("  Failed to delete old backup " + backup.path.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Backup {
+        final Path path;
+        final String original;
+        final String timestamp;
+        final long size;
+
+        Backup(Path path, String original, String timestamp, long size) {
+            this.path = path;
+            this.original = original;
+            this.timestamp = timestamp;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.BandwidthConfig;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Token bucket shared by every transfer in this process. The rate is the smaller of the per-run
+ * cap and an even share of the host-wide cap, where the share is worked out from lease files
+ * that each downloading instance keeps fresh in a common temp directory. A full bucket lets a
+ * burst through at line speed before the cap takes effect.
+ */
+public class BandwidthLimiter {
+    private static final long RECOMPUTE_INTERVAL_MS = 2000;
+    private static final long LEASE_STALE_MS = 10_000;
+    private static final int CHUNK = 16 * 1024;
+
+    private final BandwidthConfig config;
+    private final Path serverFlag;
+    private final Path leaseDir;
+    private final Path leaseFile;
+
+    private long bytesPerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastRecomputeMs;
+    private boolean leaseHeld;
+
+    private BandwidthLimiter(BandwidthConfig config, Path gameDir) {
+        this.config = config;
+        this.serverFlag = config.serverRunningFlag != null && !config.serverRunningFlag.isBlank()
+            ? gameDir.resolve(config.serverRunningFlag) : null;
+        this.leaseDir = Path.of(System.getProperty("java.io.tmpdir"), "modcontroller-bandwidth");
+        this.leaseFile = leaseDir.resolve(ProcessHandle.current().pid() + ".lease");
+        this.tokens = config.burstKib * 1024.0;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns a limiter for the config, or null when no cap is configured.
+     */
+    public static BandwidthLimiter create(BandwidthConfig config, Path gameDir) {
+        if (config == null || !config.isLimited()) return null;
+        return new BandwidthLimiter(config, gameDir);
+    }
+
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) acquire(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, Math.min(len, CHUNK));
+                if (read > 0) acquire(read);
+                return read;
+            }
+        };
+    }
+
+    void acquire(int bytes) throws InterruptedIOException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (now - lastRecomputeMs >= RECOMPUTE_INTERVAL_MS) {
+                lastRecomputeMs = now;
+                bytesPerSecond = computeRate();
+            }
+            if (bytesPerSecond <= 0) return;
+
+            long nowNanos = System.nanoTime();
+            double capacity = Math.max(config.burstKib * 1024.0, CHUNK);
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) / 1e9 * bytesPerSecond);
+            lastRefillNanos = nowNanos;
+            // Go into debt and sleep it off, so reads larger than the bucket still make progress
+            tokens -= bytes;
+            waitNanos = tokens < 0 ? (long) (-tokens / bytesPerSecond * 1e9) : 0;
+        }
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+
+    /**
+     * Drops this process out of the host-wide share once its downloads are done.
+     */
+    public synchronized void release() {
+        if (!leaseHeld) return;
+        leaseHeld = false;
+        try { Files.deleteIfExists(leaseFile); } catch (IOException ignored) {}
+    }
+
+    private long computeRate() {
+        long rate = Long.MAX_VALUE;
+        if (config.runLimitKibPerSec > 0) rate = config.runLimitKibPerSec * 1024;
+        if (config.globalLimitKibPerSec > 0) {
+            rate = Math.min(rate, config.globalLimitKibPerSec * 1024 / Math.max(1, activeInstances()));
+        }
+        if (isServerRunning() && config.serverRunningReservePercent > 0) {
+            rate = rate * (100 - Math.min(95, config.serverRunningReservePercent)) / 100;
+        }
+        return rate == Long.MAX_VALUE ? 0 : Math.max(1024, rate);
+    }
+
+    private int activeInstances() {
+        try {
+            Files.createDirectories(leaseDir);
+            long now = System.currentTimeMillis();
+            if (!leaseHeld) {
+                Files.writeString(leaseFile, "");
+                leaseHeld = true;
+            }
+            Files.setLastModifiedTime(leaseFile, FileTime.fromMillis(now));
+
+            int active = 0;
+            try (var stream = Files.list(leaseDir)) {
+                for (Path lease : (Iterable<Path>) stream::iterator) {
+                    if (!lease.getFileName().toString().endsWith(".lease")) continue;
+                    try {
+                        long age = now - Files.getLastModifiedTime(lease).toMillis();
+                        if (age <= LEASE_STALE_MS) {
+                            active++;
+                        } else {
+                            Files.deleteIfExists(lease);
+                        }
+                    } catch (IOException ignored) {
+                        // Lease removed by its owner while listing
+                    }
+                }
+            }
+            return Math.max(1, active);
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+
+    private boolean isServerRunning() {
+        if (Boolean.getBoolean("modcontroller.serverRunning")) return true;
+        return serverFlag != null && Files.exists(serverFlag);
+    }
+}
@@ -0,0 +1,209 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-block checksums for a published file, used by {@link DeltaUpdater}. Stored next to the
+ * file as {@code <file>.blocks.json}:
+ * <pre>
+ * {"format": "modcontroller-blocks-1", "block_size": 65536, "length": 123, "sha1": "...",
+ *  "blocks": ["weak:strong", ...]}
+ * </pre>
+ * "weak" is the 8-hex-digit rolling checksum of the block and "strong" the first 8 bytes of its
+ * SHA-1. Generate one with {@code java -cp modcontroller.jar:gson.jar net.cmr.modcontroller.download.BlockMap <file> [blockSize]}.
+ */
+public class BlockMap {
+    public static final String FORMAT = "modcontroller-blocks-1";
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    private static final int STRONG_BYTES = 8;
+
+    public int blockSize;
+    public long length;
+    public String sha1;
+    public int[] weak;
+    public long[] strong;
+
+    public int blockCount() {
+        return weak.length;
+    }
+
+    public long blockOffset(int index) {
+        return (long) index * blockSize;
+    }
+
+    public int blockLength(int index) {
+        return (int) Math.min(blockSize, length - blockOffset(index));
+    }
+
+    public static BlockMap read(InputStream in) throws IOException {
+        BlockMap map = new BlockMap();
+        String format = null;
+        List<String> blocks = new ArrayList<>();
+
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "format" -> format = reader.nextString();
+                    case "block_size" -> map.blockSize = reader.nextInt();
+                    case "length" -> map.length = reader.nextLong();
+                    case "sha1" -> map.sha1 = reader.nextString();
+                    case "blocks" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) blocks.add(reader.nextString());
+                        reader.endArray();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        if (!FORMAT.equals(format)) throw new IOException("Unsupported block map format: " + format);
+        if (map.blockSize <= 0) throw new IOException("Invalid block size: " + map.blockSize);
+        long expectedBlocks = (map.length + map.blockSize - 1) / map.blockSize;
+        if (blocks.size() != expectedBlocks) {
+            throw new IOException("Block map lists " + blocks.size() + " blocks, expected " + expectedBlocks);
+        }
+
+        map.weak = new int[blocks.size()];
+        map.strong = new long[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            String block = blocks.get(i);
+            int colon = block.indexOf(':');
+            if (colon < 0) throw new IOException("Malformed block entry: " + block);
+            map.weak[i] = Integer.parseUnsignedInt(block.substring(0, colon), 16);
+            map.strong[i] = Long.parseUnsignedLong(block.substring(colon + 1), 16);
+        }
+        return map;
+    }
+
+    public static BlockMap create(Path file, int blockSize) throws IOException {
+        BlockMap map = new BlockMap();
+        map.blockSize = blockSize;
+        map.length = Files.size(file);
+        int count = (int) ((map.length + blockSize - 1) / blockSize);
+        map.weak = new int[count];
+        map.strong = new long[count];
+
+        MessageDigest whole = sha1Digest();
+        MessageDigest block = sha1Digest();
+        byte[] buffer = new byte[blockSize];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int i = 0; i < count; i++) {
+                int read = in.readNBytes(buffer, 0, map.blockLength(i));
+                whole.update(buffer, 0, read);
+                map.weak[i] = RollingChecksum.of(buffer, 0, read);
+                map.strong[i] = strongChecksum(block, buffer, 0, read);
+            }
+        }
+        map.sha1 = toHex(whole.digest());
+        return map;
+    }
+
+    public void write(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("format").value(FORMAT);
+        writer.name("block_size").value(blockSize);
+        writer.name("length").value(length);
+        writer.name("sha1").value(sha1);
+        writer.name("blocks").beginArray();
+        for (int i = 0; i < weak.length; i++) {
+            writer.value(String.format("%08x:%016x", weak[i], strong[i]));
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    static long strongChecksum(MessageDigest sha1, byte[] data, int offset, int length) {
+        sha1.reset();
+        sha1.update(data, offset, length);
+        byte[] digest = sha1.digest();
+        long value = 0;
+        for (int i = 0; i < STRONG_BYTES; i++) value = (value << 8) | (digest[i] & 0xFF);
+        return value;
+    }
+
+    static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BlockMap <file> [blockSize]");
+            System.exit(1);
+        }
+        Path file = Path.of(args[0]);
+        int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BLOCK_SIZE;
+        Path out = file.resolveSibling(file.getFileName() + ".blocks.json");
+        BlockMap map = create(file, blockSize);
+        try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            map.write(writer);
+        }
+        System.out.println("Wrote " + map.blockCount() + " block checksums to " + out);
+    }
+
+    /**
+     * rsync-style weak checksum that can slide one byte at a time.
+     */
+    static final class RollingChecksum {
+        private final int windowSize;
+        private int a;
+        private int b;
+
+        RollingChecksum(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        void reset(byte[] data, int offset) {
+            a = 0;
+            b = 0;
+            for (int i = 0; i < windowSize; i++) {
+                int x = data[offset + i] & 0xFF;
+                a += x;
+                b += (windowSize - i) * x;
+            }
+        }
+
+        void roll(byte out, byte in) {
+            int x = out & 0xFF;
+            a += (in & 0xFF) - x;
+            b += a - windowSize * x;
+        }
+
+        int value() {
+            return ((b & 0xFFFF) << 16) | (a & 0xFFFF);
+        }
+
+        static int of(byte[] data, int offset, int length) {
+            RollingChecksum sum = new RollingChecksum(length);
+            sum.reset(data, offset);
+            return sum.value();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Background download progress, written to a small JSON file so the mod class can report it
+ * even though it may be loaded by a different class loader than the locator.
+ */
+public class DeferredStatus {
+    private static final Gson GSON = new Gson();
+    private static final String STATUS_FILE = "modcontroller/deferred_status.json";
+
+    public boolean active;
+    public int done;
+    public int total;
+    public int failed;
+    public String current;
+
+    static void write(Path gameDir, boolean active, int done, int total, int failed, String current) {
+        DeferredStatus status = new DeferredStatus();
+        status.active = active;
+        status.done = done;
+        status.total = total;
+        status.failed = failed;
+        status.current = current;
+        try {
+            Path file = gameDir.resolve(STATUS_FILE);
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(status));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            System.err.println("ModController: Failed to write background status: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks a status left active by a background run that never finished, e.g. because the game
+     * exited during it. Called at the start of a run, before any background work is queued.
+     */
+    static void clearStale(Path gameDir) {
+        DeferredStatus status = read(gameDir);
+        if (status != null && status.active) {
+            write(gameDir, false, status.done, status.total, status.failed, "");
+        }
+    }
+
+    /**
+     * Returns the last written status, or null if none exists.
+     */
+    public static DeferredStatus read(Path gameDir) {
+        Path file = gameDir.resolve(STATUS_FILE);
+        try {
+            if (!Files.exists(file)) return null;
+            return GSON.fromJson(Files.readString(file), DeferredStatus.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
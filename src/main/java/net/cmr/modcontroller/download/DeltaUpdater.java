@@ -0,0 +1,229 @@
+package net.cmr.modcontroller.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds an updated file from the existing local copy plus only the blocks that changed.
+ * The local file is scanned with a rolling checksum against the published {@link BlockMap},
+ * so content that merely shifted position is still reused. Missing blocks are fetched with
+ * HTTP Range requests and the result is verified against the block map's whole-file SHA-1
+ * before it replaces the destination. Returns the number of bytes fetched; any problem
+ * returns -1 so the caller can fall back to a full download.
+ */
+class DeltaUpdater {
+    // Neighbouring missing ranges separated by at most this many blocks are fetched in one request
+    private static final int MERGE_GAP_BLOCKS = 4;
+    private static final int SCAN_BUFFER = 1 << 20;
+
+    static long update(String fileUrl, String blockMapUrl, Path destination, BandwidthLimiter limiter) {
+        Path temp = destination.resolveSibling(destination.getFileName() + ".delta.tmp");
+        try {
+            BlockMap map;
+            HttpURLConnection mapConn = HttpTransport.open(blockMapUrl);
+            try (InputStream in = HttpTransport.body(mapConn)) {
+                map = BlockMap.read(in);
+            } finally {
+                mapConn.disconnect();
+            }
+
+            long[] localOffsets = findLocalBlocks(map, destination);
+            List<long[]> ranges = missingRanges(map, localOffsets);
+            long reused = 0;
+            for (int i = 0; i < map.blockCount(); i++) {
+                if (localOffsets[i] >= 0) reused += map.blockLength(i);
+            }
+
+            long fetched = 0;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel local = FileChannel.open(destination, StandardOpenOption.READ)) {
+                for (int i = 0; i < map.blockCount(); i++) {
+                    if (localOffsets[i] < 0) continue;
+                    copyFully(local, localOffsets[i], map.blockLength(i), out, map.blockOffset(i));
+                }
+                for (long[] range : ranges) {
+                    fetched += fetchRange(fileUrl, range[0], range[1], out, limiter);
+                }
+                out.truncate(map.length);
+            }
+
+            String actual = sha1(temp);
+            if (!actual.equalsIgnoreCase(map.sha1)) {
+                throw new IOException("reassembled file hash " + actual + " does not match block map " + map.sha1);
+            }
+
+            Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println(String.format("  Delta update: reused %.1f MB, fetched %.1f MB in %d range request(s)",
+                reused / 1048576.0, fetched / 1048576.0, ranges.size()));
+            return fetched;
+        } catch (Exception e) {
+            System.err.println("  Delta update unavailable, falling back to full download: " + e.getMessage());
+            try { Files.deleteIfExists(temp); } catch (IOException ignored) {}
+            return -1;
+        }
+    }
+
+    // For every block in the map, the offset of an identical block in the local file, or -1
+    private static long[] findLocalBlocks(BlockMap map, Path local) throws IOException {
+        long[] offsets = new long[map.blockCount()];
+        Arrays.fill(offsets, -1);
+
+        int blockSize = map.blockSize;
+        // Only full-size blocks take part in the rolling search; a short tail block is always fetched
+        Map<Integer, List<Integer>> byWeak = new HashMap<>();
+        for (int i = 0; i < map.blockCount(); i++) {
+            if (map.blockLength(i) == blockSize) {
+                byWeak.computeIfAbsent(map.weak[i], k -> new ArrayList<>()).add(i);
+            }
+        }
+        if (byWeak.isEmpty() || Files.size(local) < blockSize) return offsets;
+
+        MessageDigest sha1 = BlockMap.sha1Digest();
+        BlockMap.RollingChecksum rolling = new BlockMap.RollingChecksum(blockSize);
+        byte[] buf = new byte[Math.max(SCAN_BUFFER, blockSize * 4)];
+
+        try (InputStream in = Files.newInputStream(local)) {
+            int len = in.readNBytes(buf, 0, buf.length);
+            boolean eof = len < buf.length;
+            long bufStart = 0;
+            int pos = 0;
+            boolean needReset = true;
+
+            while (true) {
+                // Keep one byte of lookahead past the window so we can roll
+                if (len - pos < blockSize + 1 && !eof) {
+                    int keep = len - pos;
+                    System.arraycopy(buf, pos, buf, 0, keep);
+                    bufStart += pos;
+                    pos = 0;
+                    int read = in.readNBytes(buf, keep, buf.length - keep);
+                    len = keep + read;
+                    eof = read < buf.length - keep;
+                }
+                if (len - pos < blockSize) break;
+
+                if (needReset) {
+                    rolling.reset(buf, pos);
+                    needReset = false;
+                }
+
+                boolean matched = false;
+                List<Integer> candidates = byWeak.get(rolling.value());
+                if (candidates != null) {
+                    long strong = BlockMap.strongChecksum(sha1, buf, pos, blockSize);
+                    for (int index : candidates) {
+                        if (map.strong[index] != strong) continue;
+                        matched = true;
+                        if (offsets[index] < 0) offsets[index] = bufStart + pos;
+                    }
+                }
+
+                if (matched) {
+                    pos += blockSize;
+                    needReset = true;
+                    continue;
+                }
+                if (len - pos == blockSize) break; // at EOF with nothing left to roll in
+                rolling.roll(buf[pos], buf[pos + blockSize]);
+                pos++;
+            }
+        }
+        return offsets;
+    }
+
+    // Byte ranges [start, endInclusive] of the remote file that have to be fetched
+    private static List<long[]> missingRanges(BlockMap map, long[] localOffsets) {
+        List<long[]> ranges = new ArrayList<>();
+        int i = 0;
+        while (i < map.blockCount()) {
+            if (localOffsets[i] >= 0) {
+                i++;
+                continue;
+            }
+            int first = i;
+            int last = i;
+            int gap = 0;
+            for (int j = i + 1; j < map.blockCount() && gap <= MERGE_GAP_BLOCKS; j++) {
+                if (localOffsets[j] < 0) {
+                    last = j;
+                    gap = 0;
+                } else {
+                    gap++;
+                }
+            }
+            long start = map.blockOffset(first);
+            long end = map.blockOffset(last) + map.blockLength(last) - 1;
+            ranges.add(new long[] {start, end});
+            i = last + 1;
+        }
+        return ranges;
+    }
+
+    private static long fetchRange(String fileUrl, long start, long end, FileChannel out,
+                                   BandwidthLimiter limiter) throws IOException {
+        HttpURLConnection conn = HttpTransport.openIdentity(fileUrl);
+        conn.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        try {
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("server does not support range requests (HTTP " + conn.getResponseCode() + ")");
+            }
+            String contentRange = conn.getHeaderField("Content-Range");
+            if (contentRange == null || !contentRange.startsWith("bytes " + start + "-")) {
+                throw new IOException("unexpected Content-Range: " + contentRange);
+            }
+
+            long expected = end - start + 1;
+            long written = 0;
+            byte[] buffer = new byte[64 * 1024];
+            InputStream raw = conn.getInputStream();
+            try (InputStream in = limiter != null ? limiter.wrap(raw) : raw) {
+                int read;
+                while (written < expected && (read = in.read(buffer, 0, (int) Math.min(buffer.length, expected - written))) > 0) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) written += out.write(chunk, start + written);
+                }
+            }
+            if (written != expected) {
+                throw new IOException("range " + start + "-" + end + " ended after " + written + " bytes");
+            }
+            return written;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static void copyFully(FileChannel from, long fromOffset, int length, FileChannel to, long toOffset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (from.read(buffer, fromOffset + buffer.position()) < 0) {
+                throw new IOException("local file shrank during delta update");
+            }
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) to.write(buffer, toOffset + buffer.position());
+    }
+
+    private static String sha1(Path file) throws IOException {
+        MessageDigest digest = BlockMap.sha1Digest();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) digest.update(buffer, 0, read);
+        }
+        return BlockMap.toHex(digest.digest());
+    }
+}
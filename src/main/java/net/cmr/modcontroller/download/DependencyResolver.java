@@ -0,0 +1,190 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.DependencyConfig;
+import net.cmr.modcontroller.config.DownloadEntry;
+import net.cmr.modcontroller.download.api.ModrinthAPI;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Walks the required dependencies of configured Modrinth versions, one graph level at a time.
+ * Pinned versions of a level are fetched in one batched request; project-only dependencies
+ * are looked up concurrently. Each project gets one version: configured entries win, then
+ * installed jars, then the first version reached in the walk. Configured entries of any source
+ * count if Modrinth knows their hash, and a project whose mod ID an installed jar already
+ * declares is not added again.
+ */
+class DependencyResolver {
+    private static final int LOOKUP_THREADS = 6;
+
+    private final ModrinthAPI api;
+    private final DependencyConfig config;
+    private final Fingerprints fingerprints; // May be null
+    private final ModIndex modIndex; // May be null
+
+    DependencyResolver(ModrinthAPI api, DependencyConfig config, Fingerprints fingerprints, ModIndex modIndex) {
+        this.api = api;
+        this.config = config;
+        this.fingerprints = fingerprints;
+        this.modIndex = modIndex;
+    }
+
+    /**
+     * Returns entries for the missing dependencies of {@code configured}, in discovery order.
+     */
+    List<DownloadEntry> resolve(List<DownloadEntry> configured, Path gameDir) throws Exception {
+        // project id -> chosen version id (null for installed jars whose version we keep)
+        Map<String, String> chosen = new HashMap<>();
+        Set<String> configuredVersions = new LinkedHashSet<>();
+        for (DownloadEntry entry : configured) {
+            if (entry.sourceType == DownloadEntry.SourceType.MODRINTH && entry.versionId != null) {
+                configuredVersions.add(entry.versionId);
+            }
+        }
+        if (configuredVersions.isEmpty()) return List.of();
+
+        Map<String, ModrinthAPI.VersionInfo> roots = api.getVersions(configuredVersions);
+        for (ModrinthAPI.VersionInfo version : roots.values()) {
+            chosen.put(version.projectId, version.id);
+        }
+        for (ModrinthAPI.VersionInfo version : configuredByHash(configured)) {
+            chosen.putIfAbsent(version.projectId, version.id);
+        }
+        for (String projectId : installedProjects(gameDir.resolve("mods"))) {
+            chosen.putIfAbsent(projectId, null);
+        }
+        Set<String> installedModIds = modIndex != null ? modIndex.modIdsIn(gameDir.resolve("mods")) : Set.of();
+
+        List<DownloadEntry> added = new ArrayList<>();
+        List<ModrinthAPI.VersionInfo> level = new ArrayList<>(roots.values());
+        ExecutorService pool = Executors.newFixedThreadPool(LOOKUP_THREADS, r -> {
+            Thread t = new Thread(r, "ModController-Dependencies");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            while (!level.isEmpty()) {
+                Set<String> pinned = new LinkedHashSet<>();
+                Map<String, String> projectOnly = new LinkedHashMap<>(); // project -> first dependent
+                for (ModrinthAPI.VersionInfo version : level) {
+                    for (ModrinthAPI.Dependency dep : version.dependencies) {
+                        if (!"required".equals(dep.type)) continue;
+                        if (dep.projectId != null && chosen.containsKey(dep.projectId)) continue;
+                        if (dep.versionId != null) pinned.add(dep.versionId);
+                        else if (dep.projectId != null) projectOnly.putIfAbsent(dep.projectId, version.name);
+                    }
+                }
+
+                Map<String, Future<ModrinthAPI.VersionInfo>> lookups = new LinkedHashMap<>();
+                for (String projectId : projectOnly.keySet()) {
+                    lookups.put(projectId, pool.submit(() ->
+                        api.getLatestVersion(projectId, config.gameVersion, config.loader)));
+                }
+                List<ModrinthAPI.VersionInfo> resolved = new ArrayList<>(api.getVersions(pinned).values());
+                for (Map.Entry<String, Future<ModrinthAPI.VersionInfo>> lookup : lookups.entrySet()) {
+                    try {
+                        resolved.add(lookup.getValue().get());
+                    } catch (Exception e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        System.err.println("ModController: Could not resolve dependency " + lookup.getKey() +
+                                           " of " + projectOnly.get(lookup.getKey()) + ": " + cause.getMessage());
+                    }
+                }
+
+                List<ModrinthAPI.VersionInfo> next = new ArrayList<>();
+                for (ModrinthAPI.VersionInfo version : resolved) {
+                    if (chosen.containsKey(version.projectId)) {
+                        String kept = chosen.get(version.projectId);
+                        if (kept != null && !kept.equals(version.id)) {
+                            System.out.println("ModController: Keeping version " + kept + " of " + version.projectId +
+                                               " over dependency on " + version.id);
+                        }
+                        continue;
+                    }
+                    chosen.put(version.projectId, version.id);
+                    List<String> modIds = modIndex != null ? modIndex.projectModIds(version.projectId) : null;
+                    if (modIds != null && !Collections.disjoint(modIds, installedModIds)) {
+                        System.out.println("ModController: Not adding dependency " + version.download.filename +
+                                           ", another jar already provides " + String.join(", ", modIds));
+                        continue;
+                    }
+                    DownloadEntry entry = DownloadEntry.forModrinth(version.download.filename, version.projectId,
+                                                                    version.id, config.destination);
+                    entry.size = version.download.size;
+                    entry.addedAsDependency = true;
+                    added.add(entry);
+                    next.add(version);
+                }
+                level = next;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return added;
+    }
+
+    // Configured entries from any source (URL, CurseForge, mrpack) that carry a hash Modrinth knows
+    private List<ModrinthAPI.VersionInfo> configuredByHash(List<DownloadEntry> configured) {
+        Set<String> sha1 = new LinkedHashSet<>();
+        Set<String> sha512 = new LinkedHashSet<>();
+        for (DownloadEntry entry : configured) {
+            if (entry.sha1Hash != null && !entry.sha1Hash.isBlank()) sha1.add(entry.sha1Hash.toLowerCase());
+            else if (entry.sha512Hash != null && !entry.sha512Hash.isBlank()) sha512.add(entry.sha512Hash.toLowerCase());
+        }
+        List<ModrinthAPI.VersionInfo> versions = new ArrayList<>();
+        try {
+            versions.addAll(api.getVersionsByHash(sha1, "sha1").values());
+            versions.addAll(api.getVersionsByHash(sha512, "sha512").values());
+        } catch (Exception e) {
+            System.err.println("ModController: Could not identify configured files: " + e.getMessage());
+        }
+        return versions;
+    }
+
+    // Projects of jars already in mods/, identified by SHA-1 in one request
+    private Set<String> installedProjects(Path modsDir) {
+        Set<String> projects = new HashSet<>();
+        if (!Files.isDirectory(modsDir)) return projects;
+        try {
+            List<String> hashes = new ArrayList<>();
+            try (var stream = Files.list(modsDir)) {
+                for (Path jar : (Iterable<Path>) stream.filter(p -> p.toString().endsWith(".jar"))::iterator) {
+                    hashes.add(fingerprints != null ? fingerprints.digest(jar, "SHA-1") : sha1(jar));
+                }
+            }
+            for (ModrinthAPI.VersionInfo version : api.getVersionsByHash(hashes).values()) {
+                projects.add(version.projectId);
+            }
+        } catch (Exception e) {
+            System.err.println("ModController: Could not identify installed mods: " + e.getMessage());
+        }
+        return projects;
+    }
+
+    private static String sha1(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package net.cmr.modcontroller.download;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR events for the download lifecycle, visible in any recording, e.g.
+ * {@code -XX:StartFlightRecording:filename=launch.jfr}. They cost nothing when no recording is active.
+ * Only touched through {@link RunReport}, which checks that the jdk.jfr module is present.
+ */
+final class DownloadEvents {
+    private DownloadEvents() {}
+
+    @Name("modcontroller.Phase")
+    @Label("Download Phase")
+    @Category({"Mod Controller"})
+    @Description("A phase of a download run, such as consent, preflight or downloads")
+    static final class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("modcontroller.Entry")
+    @Label("Download Entry")
+    @Category({"Mod Controller"})
+    static final class EntryEvent extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Result")
+        String result;
+
+        @Label("Source")
+        String source;
+
+        @Label("Host")
+        String host;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Resolve (ms)")
+        long resolveMs;
+
+        @Label("Transfer (ms)")
+        long transferMs;
+
+        @Label("Verify (ms)")
+        long verifyMs;
+
+        @Label("Retries")
+        int retries;
+    }
+
+    // Handles are passed around as Object so callers never link against jdk.jfr themselves
+
+    static Object beginPhase(String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    static Object beginEntry() {
+        EntryEvent event = new EntryEvent();
+        event.begin();
+        return event;
+    }
+
+    static void end(Object handle) {
+        ((Event) handle).commit();
+    }
+
+    static void endEntry(Object handle, EntryMetrics metrics) {
+        EntryEvent event = (EntryEvent) handle;
+        if (event.shouldCommit()) {
+            event.name = metrics.name;
+            event.destination = metrics.destination;
+            event.result = metrics.result;
+            event.source = metrics.source;
+            event.host = metrics.host;
+            event.bytes = metrics.bytes;
+            event.resolveMs = metrics.resolveMs;
+            event.transferMs = metrics.transferMs;
+            event.verifyMs = metrics.verifyMs;
+            event.retries = metrics.retries;
+        }
+        event.commit();
+    }
+}
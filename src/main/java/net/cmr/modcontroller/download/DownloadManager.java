@@ -2,30 +2,79 @@ package net.cmr.modcontroller.download;
 
 import net.cmr.modcontroller.config.DownloadEntry;
 import net.cmr.modcontroller.config.ModConfig;
+import net.cmr.modcontroller.config.PipelineConfig;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DownloadManager {
     private static final String MARKER_FILE = "modcontroller/modcontroller.marker";
+    private static final String RUN_LOCK_FILE = "modcontroller/run.lock";
+    private static final List<String> CRITICAL_DIRS = List.of("mods", "config", "defaultconfigs", "kubejs", "scripts");
 
     public static final class RunResult {
         public final int success;
         public final int failed;
         public final int skipped;
+        public final List<EntryResult> entries;
         public RunResult(int success, int failed, int skipped) {
+            this(success, failed, skipped, List.of());
+        }
+        public RunResult(int success, int failed, int skipped, List<EntryResult> entries) {
             this.success = success;
             this.failed = failed;
             this.skipped = skipped;
+            this.entries = entries;
+        }
+        public RunResult plus(RunResult other) {
+            List<EntryResult> all = new ArrayList<>(entries);
+            all.addAll(other.entries);
+            return new RunResult(success + other.success, failed + other.failed, skipped + other.skipped, all);
+        }
+    }
+
+    public static final class EntryResult {
+        public final String name;
+        public final String destination;
+        public final FileDownloader.Result result;
+        public EntryResult(String name, String destination, FileDownloader.Result result) {
+            this.name = name;
+            this.destination = destination;
+            this.result = result;
         }
     }
 
     private final Path gameDir;
     private final ModConfig config;
     private final FileDownloader downloader;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final ArtifactIndex artifactIndex;
+    private final SizeHistory sizeHistory;
+    private final Fingerprints fingerprints;
+    private final ModIndex modIndex;
+    private final Reconciler reconciler;
+    private final RunReport report = new RunReport();
     private ProgressCallback progressCallback;
+    private boolean uiPacing = true;
+    private List<DownloadEntry> pendingDeferred = List.of();
+    private volatile CompletableFuture<Prepared> preparation;
+    // Files placed or confirmed this run; the update check is only recorded as fresh if every entry ended up in place
+    private final List<Path> placedFiles = new ArrayList<>();
+    private boolean allPlaced = true;
+    private Reconciler.Plan plan; // Orphans in it are removed once the whole run is done
 
     public DownloadManager(Path gameDir, ModConfig config) {
         this(gameDir, config, null);
@@ -35,11 +84,39 @@ public class DownloadManager {
         this.gameDir = gameDir;
         this.config = config;
         this.progressCallback = progressCallback;
+        this.bandwidthLimiter = BandwidthLimiter.create(config.bandwidth, gameDir);
         this.downloader = new FileDownloader(
             config.modrinthApiKey,
             config.curseforgeApiKey,
-            config.backupReplacedFiles
+            config.backupReplacedFiles,
+            bandwidthLimiter
         );
+        this.artifactIndex = ArtifactIndex.load(gameDir);
+        this.downloader.setArtifactIndex(artifactIndex);
+        this.downloader.setBackupConfig(config.backups);
+        if (config.transfer != null) {
+            HttpTransport.setTimeouts(config.transfer.connectTimeoutMs, config.transfer.readTimeoutMs);
+            this.downloader.setTransferConfig(config.transfer);
+        }
+        this.sizeHistory = SizeHistory.load(gameDir);
+        this.downloader.setSizeHistory(sizeHistory);
+        if (config.coordination != null && config.coordination.enabled) {
+            String configured = config.coordination.lockDir;
+            Path lockDir = configured == null || configured.isBlank() ? HostLocks.privateDir() : Path.of(configured);
+            if (lockDir != null) {
+                this.downloader.setHostCoordination(lockDir, config.coordination.waitTimeoutMs);
+            } else {
+                System.err.println("ModController: No private lock directory available, instances will not share downloads");
+            }
+        }
+        this.fingerprints = Fingerprints.load(gameDir);
+        this.downloader.setFingerprints(fingerprints);
+        this.modIndex = ModIndex.load(gameDir);
+        this.downloader.setModIndex(modIndex);
+        this.reconciler = Reconciler.load(gameDir);
+        if (config.fleet != null) {
+            this.downloader.setPeers(config.fleet.peers, config.fleet.peerTimeoutMs);
+        }
     }
 
     public void setProgressCallback(ProgressCallback callback) {
@@ -47,6 +124,13 @@ public class DownloadManager {
         System.out.println("ModController: Progress callback set!");
     }
 
+    /**
+     * Short pauses between entries keep the progress window readable. Headless callers turn them off.
+     */
+    public void setUiPacing(boolean uiPacing) {
+        this.uiPacing = uiPacing;
+    }
+
     public boolean shouldRunDownloads() {
         Path markerFile = gameDir.resolve(MARKER_FILE);
 
@@ -57,6 +141,12 @@ public class DownloadManager {
             }
 
             if (config.checkForUpdates) {
+                long age = UpdateState.freshAgeMinutes(gameDir, UpdateState.fingerprint(config), config.updateCheckTtlMinutes);
+                if (age >= 0) {
+                    System.out.println("ModController: Config unchanged and updates checked " + age +
+                                       " minute(s) ago, skipping update check.");
+                    return false;
+                }
                 System.out.println("ModController: Checking for file updates...");
                 return true;
             }
@@ -68,27 +158,89 @@ public class DownloadManager {
     }
 
     public RunResult runDownloads() {
+        HostLocks.Held runLock = null;
         try {
+            runLock = lockGameDir();
             System.out.println("ModController: runDownloads() called");
+            DeferredStatus.clearStale(gameDir);
             reportProgress("Initializing", 5, "Starting download process...");
-            Thread.sleep(100);
+            pace(100);
 
             System.out.println("========================================");
             System.out.println("MOD CONTROLLER: Starting downloads");
             System.out.println("========================================");
 
-            List<DownloadEntry> files = config.downloads.stream()
-                .filter(e -> e.enabled)
-                .toList();
+            Prepared prepared = null;
+            if (preparation != null) {
+                try {
+                    prepared = preparation.join();
+                    System.out.println("ModController: Using preparation done during consent");
+                } catch (Exception e) {
+                    System.err.println("ModController: Preparation failed, redoing it: " + e.getMessage());
+                }
+            }
+            if (prepared == null) prepared = prepare(false);
+            List<DownloadEntry> files = prepared.files;
+            Preflight.Report preflight = prepared.preflight;
+            plan = prepared.plan;
+            synchronized (placedFiles) {
+                placedFiles.addAll(reconciler.unchangedFiles(plan));
+            }
+
+            // Entries preflight could not resolve or reach fail on their own; the rest still run
+            List<EntryResult> unavailable = new ArrayList<>();
+            if (preflight != null) {
+                boolean abort = config.preflight.abortOnProblems && !preflight.diskProblems.isEmpty() ||
+                                config.preflight.abortOnUnavailableEntries && !preflight.failedEntries.isEmpty();
+                if (abort) {
+                    System.err.println("ModController: Preflight found " + preflight.problems.size() +
+                                       " problem(s); nothing was changed");
+                    String first = !preflight.diskProblems.isEmpty() ? preflight.diskProblems.get(0) : preflight.problems.get(0);
+                    reportProgress("Error", 0, "Preflight failed: " + first);
+                    List<EntryResult> failed = new ArrayList<>();
+                    for (DownloadEntry entry : preflight.failedEntries) {
+                        failed.add(new EntryResult(entry.name, entry.destination, FileDownloader.Result.FAILED));
+                    }
+                    return new RunResult(0, Math.max(1, failed.size()), 0, failed);
+                }
+                if (!preflight.failedEntries.isEmpty()) {
+                    Set<DownloadEntry> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+                    dropped.addAll(preflight.failedEntries);
+                    files = files.stream().filter(e -> !dropped.contains(e)).toList();
+                    for (DownloadEntry entry : dropped) {
+                        unavailable.add(new EntryResult(entry.name, entry.destination, FileDownloader.Result.FAILED));
+                    }
+                    synchronized (placedFiles) {
+                        allPlaced = false;
+                    }
+                    System.err.println("ModController: Skipping " + dropped.size() + " unavailable entry(ies) this run");
+                }
+            }
+
+            // Non-critical entries are held back and finished in the background after discovery
+            if (config.deferNonCriticalDownloads) {
+                pendingDeferred = files.stream().filter(e -> !isCritical(e)).toList();
+                files = files.stream().filter(DownloadManager::isCritical).toList();
+                if (!pendingDeferred.isEmpty()) {
+                    System.out.println("ModController: " + pendingDeferred.size() +
+                                       " non-critical file(s) will download in the background");
+                }
+            }
 
             if (files.isEmpty()) {
-                System.out.println("ModController: No enabled downloads in config.");
-                createMarker();
-                reportProgress("Complete", 100, "No downloads configured");
-                Thread.sleep(300);
-                return new RunResult(0, 0, 0);
+                System.out.println("ModController: No enabled downloads needed before mod discovery.");
+                if (pendingDeferred.isEmpty()) {
+                    createMarker();
+                    recordUpdateCheck();
+                    removeOrphans();
+                }
+                reconciler.save();
+                reportProgress("Complete", 100, "No downloads needed");
+                pace(300);
+                return new RunResult(0, unavailable.size(), 0, unavailable);
             }
 
+            files = DownloadScheduler.order(files, config.downloadOrder, sizeHistory);
             ProgressTracker.startDownload(files.size());
             System.out.println("ModController: " + files.size() + " file(s) queued for download");
             System.out.println("========================================");
@@ -96,26 +248,44 @@ public class DownloadManager {
             int successCount = 0;
             int failCount = 0;
             int skipCount = 0;
+            List<EntryResult> entryResults = new ArrayList<>();
+            RunReport.Phase downloadPhase = report.startPhase("downloads");
+
+            List<DownloadEntry> queued = files;
+            FileDownloader.Result[] results = pipeline().run(queued, new DownloadPipeline.Listener() {
+                @Override
+                public synchronized EntryMetrics started(int index, DownloadEntry entry) {
+                    int overallProgress = 10 + (int) ((index / (float) queued.size()) * 80);
+                    ProgressTracker.updateFile(index + 1, entry.name);
+                    String progressMessage = String.format("[%d/%d] %s", index + 1, queued.size(), entry.name);
+                    reportProgress("Downloading Files", overallProgress, progressMessage);
+
+                    System.out.println(String.format("\n[%d/%d] %s", index + 1, queued.size(), entry.name));
+                    return beginMeasured(entry);
+                }
 
+                @Override
+                public void finished(int index, DownloadEntry entry, EntryMetrics metrics, FileDownloader.Result result) {
+                    endMeasured(entry, metrics, result);
+                    try {
+                        pace(150);
+                    } catch (InterruptedException ignored) {
+                        // Pacing is cosmetic; the stage keeps draining its queue
+                    }
+                }
+            });
             for (int i = 0; i < files.size(); i++) {
-                DownloadEntry entry = files.get(i);
-
-                int overallProgress = 10 + (int) ((i / (float) files.size()) * 80);
-                ProgressTracker.updateFile(i + 1, entry.name);
-                String progressMessage = String.format("[%d/%d] %s", i + 1, files.size(), entry.name);
-                reportProgress("Downloading Files", overallProgress, progressMessage);
-
-                System.out.println(String.format("\n[%d/%d] %s", i + 1, files.size(), entry.name));
-
-                FileDownloader.Result result = downloader.downloadEntry(entry, gameDir);
+                FileDownloader.Result result = results[i] != null ? results[i] : FileDownloader.Result.FAILED;
                 switch (result) {
                     case SUCCESS -> successCount++;
                     case FAILED -> failCount++;
                     case SKIPPED -> skipCount++;
                 }
-
-                Thread.sleep(150);
+                entryResults.add(new EntryResult(files.get(i).name, files.get(i).destination, result));
             }
+            downloadPhase.end();
+            failCount += unavailable.size();
+            entryResults.addAll(unavailable);
 
             reportProgress("Complete", 100,
                 String.format("Downloaded %d/%d files (%d skipped, %d failed)",
@@ -127,9 +297,19 @@ public class DownloadManager {
             System.out.println("========================================");
 
             ProgressTracker.finish();
-            createMarker();
+            // With background work pending the marker waits, so an interrupted run is resumed next launch
+            if (pendingDeferred.isEmpty()) {
+                createMarker();
+                recordUpdateCheck();
+                removeOrphans();
+            }
+            artifactIndex.save();
+            sizeHistory.save();
+            fingerprints.save();
+            modIndex.save();
+            reconciler.save();
 
-            return new RunResult(successCount, failCount, skipCount);
+            return new RunResult(successCount, failCount, skipCount, entryResults);
 
         } catch (Exception e) {
             System.err.println("ModController: ERROR during downloads");
@@ -137,9 +317,321 @@ public class DownloadManager {
             reportProgress("Error", 0, "Download failed: " + e.getMessage());
             ProgressTracker.finish();
             return new RunResult(0, 1, 0); // signal a failure occurred
+        } finally {
+            if (runLock != null) runLock.close();
+            if (bandwidthLimiter != null) bandwidthLimiter.release();
+            report.write(gameDir);
         }
     }
 
+    /**
+     * Starts read-only preparation on a background thread, to use time spent waiting for consent:
+     * dependency and metadata resolution, local file verification, preflight checks and DNS/TLS
+     * warm-up. No artifact bytes are fetched; {@link #runDownloads()} picks up the result.
+     */
+    public void prepareAsync() {
+        if (preparation != null) return;
+        CompletableFuture<Prepared> future = new CompletableFuture<>();
+        preparation = future;
+        Thread thread = new Thread(() -> {
+            RunReport.Phase phase = report.startPhase("prepare");
+            try {
+                future.complete(prepare(true));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                phase.end();
+            }
+        }, "ModController-Prepare");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static final class Prepared {
+        final List<DownloadEntry> files; // Only the entries the plan needs to run
+        final Preflight.Report preflight; // null when preflight is off
+        final Reconciler.Plan plan;
+
+        Prepared(List<DownloadEntry> files, Preflight.Report preflight, Reconciler.Plan plan) {
+            this.files = files;
+            this.preflight = preflight;
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * Compares the config with what earlier runs installed, without changing anything. Dependencies
+     * that would be added are not part of the plan.
+     */
+    public Reconciler.Plan plan() {
+        return reconciler.plan(config.allDownloads().stream().filter(e -> e.enabled).toList(), config.packImportFailed);
+    }
+
+    private Prepared prepare(boolean warmUp) throws InterruptedException {
+        List<DownloadEntry> configured = config.allDownloads().stream()
+            .filter(e -> e.enabled)
+            .toList();
+        Reconciler.Plan plan = reconciler.plan(configured, config.packImportFailed);
+        plan.print();
+        List<DownloadEntry> files = plan.toRun();
+
+        // With nothing to install, the dependencies found by earlier runs are still in place
+        if (config.dependencies != null && config.dependencies.resolve && !files.isEmpty()) {
+            RunReport.Phase phase = report.startPhase("dependencies");
+            // Dependencies are resolved for every configured entry, but only missing ones are added
+            List<DownloadEntry> all = withDependencies(configured);
+            if (all.size() > configured.size()) {
+                files = new ArrayList<>(files);
+                files.addAll(all.subList(configured.size(), all.size()));
+            }
+            phase.end();
+        }
+
+        Preflight.Report preflight = null;
+        if (config.preflight != null && config.preflight.enabled && !files.isEmpty()) {
+            reportProgress("Preflight", 9, "Checking sources and disk space...");
+            RunReport.Phase phase = report.startPhase("preflight");
+            preflight = new Preflight(downloader, sizeHistory, config.preflight).run(files, gameDir);
+            phase.end();
+        }
+
+        if (warmUp) warmUp(files);
+        return new Prepared(files, preflight, plan);
+    }
+
+    // Resolves entries that still need a transfer and opens one connection per host, so DNS, TCP
+    // and TLS setup are done (and TLS sessions cached) before the first download starts.
+    private void warmUp(List<DownloadEntry> files) throws InterruptedException {
+        Map<String, String> urlByHost = new LinkedHashMap<>();
+        for (DownloadEntry entry : files) {
+            try {
+                FileDownloader.Resolved resolved = downloader.resolve(entry);
+                if (!resolved.url.startsWith("http") || downloader.isCurrent(entry, resolved, gameDir)) continue;
+                urlByHost.putIfAbsent(EntryMetrics.hostOf(resolved.url), resolved.url);
+            } catch (Exception e) {
+                // Reported again when the entry is downloaded
+            }
+        }
+        if (urlByHost.isEmpty()) return;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(8, urlByHost.size()), r -> {
+            Thread t = new Thread(r, "ModController-WarmUp");
+            t.setDaemon(true);
+            return t;
+        });
+        for (String url : urlByHost.values()) {
+            pool.submit(() -> HttpTransport.warmUp(url));
+        }
+        pool.shutdown();
+        pool.awaitTermination(15, TimeUnit.SECONDS);
+        System.out.println("ModController: Warmed up connections to " + urlByHost.size() + " host(s)");
+    }
+
+    public boolean hasDeferredDownloads() {
+        return !pendingDeferred.isEmpty();
+    }
+
+    /**
+     * Runs the entries held back by {@link #runDownloads()} on a background thread.
+     * Returns null if there is nothing to do.
+     */
+    public Thread startDeferredDownloads() {
+        if (pendingDeferred.isEmpty()) return null;
+        Thread thread = new Thread(this::runDeferredDownloads, "ModController-Deferred");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Runs the entries held back by {@link #runDownloads()} on the calling thread.
+     * Progress goes to {@link ProgressTracker} and to a status file read by the mod class.
+     */
+    public RunResult runDeferredDownloads() {
+        List<DownloadEntry> files = pendingDeferred;
+        pendingDeferred = List.of();
+        if (files.isEmpty()) return new RunResult(0, 0, 0);
+        files = DownloadScheduler.order(files, config.downloadOrder, sizeHistory);
+
+        int successCount = 0;
+        int failCount = 0;
+        int skipCount = 0;
+        List<EntryResult> entryResults = new ArrayList<>();
+        RunReport.Phase phase = report.startPhase("background");
+        HostLocks.Held runLock = null;
+        AtomicInteger done = new AtomicInteger();
+        try {
+            runLock = lockGameDir();
+            System.out.println("ModController: Starting " + files.size() + " background download(s)");
+            ProgressTracker.startDeferred(files.size());
+            DeferredStatus.write(gameDir, true, 0, files.size(), 0, "");
+
+            List<DownloadEntry> queued = files;
+            AtomicInteger failed = new AtomicInteger();
+            FileDownloader.Result[] results = pipeline().run(queued, new DownloadPipeline.Listener() {
+                @Override
+                public synchronized EntryMetrics started(int index, DownloadEntry entry) {
+                    ProgressTracker.updateDeferred(done.get(), entry.name);
+                    DeferredStatus.write(gameDir, true, done.get(), queued.size(), failed.get(), entry.name);
+                    System.out.println(String.format("\n[background %d/%d] %s", index + 1, queued.size(), entry.name));
+                    return beginMeasured(entry);
+                }
+
+                @Override
+                public void finished(int index, DownloadEntry entry, EntryMetrics metrics, FileDownloader.Result result) {
+                    endMeasured(entry, metrics, result);
+                    if (result == FileDownloader.Result.FAILED) failed.incrementAndGet();
+                    ProgressTracker.updateDeferred(done.incrementAndGet(), entry.name);
+                }
+            });
+            for (int i = 0; i < files.size(); i++) {
+                FileDownloader.Result result = results[i] != null ? results[i] : FileDownloader.Result.FAILED;
+                switch (result) {
+                    case SUCCESS -> successCount++;
+                    case FAILED -> failCount++;
+                    case SKIPPED -> skipCount++;
+                }
+                entryResults.add(new EntryResult(files.get(i).name, files.get(i).destination, result));
+            }
+
+            System.out.println("ModController: Background downloads complete: success=" + successCount +
+                               " failed=" + failCount + " skipped=" + skipCount);
+            createMarker();
+            recordUpdateCheck();
+            removeOrphans();
+            artifactIndex.save();
+            sizeHistory.save();
+            fingerprints.save();
+            modIndex.save();
+            reconciler.save();
+        } catch (Exception e) {
+            System.err.println("ModController: ERROR during background downloads");
+            e.printStackTrace();
+            failCount++;
+        } finally {
+            // Also after an error, or the mod's status reporter would keep waiting for this run
+            DeferredStatus.write(gameDir, false, done.get(), files.size(), failCount, "");
+            if (runLock != null) runLock.close();
+            ProgressTracker.finishDeferred();
+            if (bandwidthLimiter != null) bandwidthLimiter.release();
+            phase.end();
+            report.write(gameDir);
+        }
+        return new RunResult(successCount, failCount, skipCount, entryResults);
+    }
+
+    /**
+     * Starts a timed phase in the run report, e.g. for the consent wait. Call end() on the result.
+     */
+    public RunReport.Phase startPhase(String name) {
+        return report.startPhase(name);
+    }
+
+    // Two launches racing on one game directory take turns instead of writing the same files
+    private HostLocks.Held lockGameDir() throws InterruptedException {
+        if (config.coordination == null || !config.coordination.enabled) return null;
+        try {
+            return HostLocks.acquire(gameDir.resolve(RUN_LOCK_FILE), config.coordination.waitTimeoutMs,
+                "ModController: Another launch is updating this game directory, waiting for it to finish...");
+        } catch (IOException e) {
+            System.err.println("ModController: Cannot lock the game directory (" + e.getMessage() + "), continuing without it");
+            return null;
+        }
+    }
+
+    private DownloadPipeline pipeline() {
+        return new DownloadPipeline(downloader, gameDir, config.pipeline != null ? config.pipeline : new PipelineConfig());
+    }
+
+    private EntryMetrics beginMeasured(DownloadEntry entry) {
+        EntryMetrics metrics = new EntryMetrics(entry);
+        metrics.event = report.beginEntry();
+        metrics.startNanos = System.nanoTime();
+        return metrics;
+    }
+
+    private void endMeasured(DownloadEntry entry, EntryMetrics metrics, FileDownloader.Result result) {
+        metrics.totalMs = EntryMetrics.millisSince(metrics.startNanos);
+        metrics.result = result.name();
+        report.endEntry(metrics.event, metrics);
+        synchronized (placedFiles) {
+            if (metrics.placed != null && result != FileDownloader.Result.FAILED) placedFiles.add(metrics.placed);
+            else if (entry.enabled) allPlaced = false;
+        }
+        if (metrics.placed != null && result != FileDownloader.Result.FAILED) reconciler.record(entry, metrics.placed);
+    }
+
+    // Only after a clean run: a renamed entry that failed to download keeps its old file meanwhile
+    private void removeOrphans() {
+        if (plan == null) return;
+        synchronized (placedFiles) {
+            if (!allPlaced) return;
+            reconciler.removeOrphans(plan, placedFiles, downloader, config.removeOrphanedFiles);
+        }
+        plan = null;
+    }
+
+    private void recordUpdateCheck() {
+        if (!config.checkForUpdates || config.updateCheckTtlMinutes <= 0) return;
+        synchronized (placedFiles) {
+            if (allPlaced) {
+                UpdateState.record(gameDir, UpdateState.fingerprint(config), placedFiles);
+            } else {
+                UpdateState.clear(gameDir); // Something is missing, so the next launch checks again
+            }
+        }
+    }
+
+    private List<DownloadEntry> withDependencies(List<DownloadEntry> files) {
+        reportProgress("Resolving", 8, "Resolving Modrinth dependencies...");
+        try {
+            List<DownloadEntry> added = new DependencyResolver(downloader.modrinthAPI(), config.dependencies, fingerprints, modIndex)
+                .resolve(files, gameDir);
+            if (added.isEmpty()) return files;
+            System.out.println("ModController: Adding " + added.size() + " missing dependency(ies):");
+            for (DownloadEntry entry : added) System.out.println("  + " + entry.name);
+            List<DownloadEntry> all = new ArrayList<>(files);
+            all.addAll(added);
+            return all;
+        } catch (Exception e) {
+            // Configured entries still download; a missing dependency shows up as a load error
+            System.err.println("ModController: Dependency resolution failed: " + e.getMessage());
+            return files;
+        }
+    }
+
+    // Mods must be present before discovery, and configs/scripts are read while mods load.
+    // Everything else (resource packs, shader packs, worlds...) can arrive after startup.
+    static boolean isCritical(DownloadEntry entry) {
+        if (entry.phase != null && !entry.phase.isBlank()) {
+            return !"deferred".equalsIgnoreCase(entry.phase);
+        }
+        String destination = entry.destination == null ? "" : entry.destination.replace('\\', '/').toLowerCase();
+        while (destination.startsWith("./")) destination = destination.substring(2);
+        if (destination.endsWith(".jar")) return true;
+        for (String dir : CRITICAL_DIRS) {
+            if (destination.startsWith(dir + "/") || destination.equals(dir)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts serving verified artifacts to fleet peers if enabled. Returns null when disabled.
+     */
+    public ArtifactServer startArtifactServer() {
+        if (config.fleet == null || !config.fleet.serve) return null;
+        try {
+            return ArtifactServer.start(config.fleet, artifactIndex);
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to start artifact server: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void pace(long millis) throws InterruptedException {
+        if (uiPacing) Thread.sleep(millis);
+    }
+
     private void reportProgress(String phase, int progress, String message) {
         System.out.println(String.format("ModController: reportProgress called - phase='%s', progress=%d%%, message='%s', callback=%s",
             phase, progress, message, (progressCallback != null ? "SET" : "NULL")));
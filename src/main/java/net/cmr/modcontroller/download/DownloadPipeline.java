@@ -0,0 +1,158 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.DownloadEntry;
+import net.cmr.modcontroller.config.PipelineConfig;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs entries through resolve, transfer and install stages, each with its own threads. Resolution
+ * runs a bounded distance ahead of the transfers, and finished transfers wait in a bounded queue for
+ * hashing and installation, so hashing file N overlaps the transfer of N+1 and the lookup of N+2
+ * while memory and open work stay bounded.
+ */
+class DownloadPipeline {
+    interface Listener {
+        /** Called on a transfer thread when an entry starts; returns the metrics to fill in. */
+        EntryMetrics started(int index, DownloadEntry entry);
+
+        /** Called on an install thread when an entry is done. */
+        void finished(int index, DownloadEntry entry, EntryMetrics metrics, FileDownloader.Result result);
+    }
+
+    private static final class Job {
+        final int index;
+        final FileDownloader.Transferred staged;
+
+        Job(int index, FileDownloader.Transferred staged) {
+            this.index = index;
+            this.staged = staged;
+        }
+    }
+
+    private static final Job END = new Job(-1, null);
+
+    private final FileDownloader downloader;
+    private final Path gameDir;
+    private final int resolveWorkers;
+    private final int transferWorkers;
+    private final int installWorkers;
+    private final int queueCapacity;
+
+    DownloadPipeline(FileDownloader downloader, Path gameDir, PipelineConfig config) {
+        this.downloader = downloader;
+        this.gameDir = gameDir;
+        this.resolveWorkers = Math.max(1, config.resolveWorkers);
+        this.transferWorkers = Math.max(1, config.transferWorkers);
+        this.installWorkers = Math.max(1, config.installWorkers);
+        this.queueCapacity = Math.max(1, config.queueCapacity);
+    }
+
+    /**
+     * Runs all entries and returns their results in list order. Entries start in list order.
+     */
+    FileDownloader.Result[] run(List<DownloadEntry> entries, Listener listener) throws InterruptedException {
+        int count = entries.size();
+        FileDownloader.Result[] results = new FileDownloader.Result[count];
+        if (count == 0) return results;
+
+        ExecutorService resolvers = Executors.newFixedThreadPool(Math.min(resolveWorkers, count), daemon("Resolve"));
+        List<CompletableFuture<Void>> resolved = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) resolved.add(new CompletableFuture<>());
+        // Permits bound how far resolution runs ahead of the transfer stage
+        Semaphore lookahead = new Semaphore(queueCapacity + transferWorkers);
+        BlockingQueue<Job> installQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Thread feeder = daemon("Resolve").newThread(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    lookahead.acquire();
+                    DownloadEntry entry = entries.get(i);
+                    CompletableFuture<Void> done = resolved.get(i);
+                    resolvers.execute(() -> {
+                        try {
+                            if (entry.enabled) downloader.resolve(entry);
+                        } catch (Exception e) {
+                            // The transfer stage resolves again and reports the failure
+                        } finally {
+                            done.complete(null);
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                resolved.forEach(f -> f.complete(null));
+            }
+        });
+        feeder.start();
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger transfersLeft = new AtomicInteger(transferWorkers);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < transferWorkers; w++) {
+            threads.add(daemon("Transfer").newThread(() -> {
+                try {
+                    for (int i; (i = next.getAndIncrement()) < count; ) {
+                        resolved.get(i).join();
+                        lookahead.release();
+                        DownloadEntry entry = entries.get(i);
+                        EntryMetrics metrics = listener.started(i, entry);
+                        installQueue.put(new Job(i, downloader.transfer(entry, gameDir, metrics)));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // The last transfer thread to finish tells every install thread to stop
+                    if (transfersLeft.decrementAndGet() == 0) {
+                        try {
+                            for (int k = 0; k < installWorkers; k++) installQueue.put(END);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }));
+        }
+        for (int w = 0; w < installWorkers; w++) {
+            threads.add(daemon("Install").newThread(() -> {
+                try {
+                    while (true) {
+                        Job job = installQueue.take();
+                        if (job == END) return;
+                        FileDownloader.Result result = downloader.install(job.staged);
+                        results[job.index] = result;
+                        listener.finished(job.index, job.staged.entry, job.staged.metrics, result);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        try {
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) thread.join();
+        } finally {
+            feeder.interrupt();
+            resolvers.shutdownNow();
+        }
+        return results;
+    }
+
+    private static ThreadFactory daemon(String stage) {
+        return r -> {
+            Thread t = new Thread(r, "ModController-" + stage);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
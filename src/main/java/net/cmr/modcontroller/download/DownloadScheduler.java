@@ -0,0 +1,100 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.DownloadEntry;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders a run according to the "download_order" setting. Sizes come from the entry itself,
+ * then from {@link SizeHistory}, then from a HEAD request for plain URLs. Entries whose size
+ * is still unknown sort after known ones; ties keep config order.
+ */
+class DownloadScheduler {
+    static final String CONFIG_ORDER = "config";
+    static final String LARGEST_FIRST = "largest_first";
+    static final String CRITICAL_FIRST = "critical_first";
+
+    private static final int HEAD_TIMEOUT_MS = 3000;
+    private static final int HEAD_THREADS = 4;
+
+    private DownloadScheduler() {}
+
+    static List<DownloadEntry> order(List<DownloadEntry> entries, String policy, SizeHistory history) {
+        if (policy == null || CONFIG_ORDER.equals(policy) || entries.size() < 2) return entries;
+
+        Map<DownloadEntry, Long> sizes = estimateSizes(entries, history);
+        Comparator<DownloadEntry> bySize = Comparator.comparingLong((DownloadEntry e) -> sizes.get(e)).reversed();
+        Comparator<DownloadEntry> comparator = switch (policy) {
+            case LARGEST_FIRST -> bySize;
+            case CRITICAL_FIRST -> Comparator.comparingInt((DownloadEntry e) -> e.priority).reversed().thenComparing(bySize);
+            default -> null;
+        };
+        if (comparator == null) return entries;
+
+        List<DownloadEntry> ordered = new ArrayList<>(entries);
+        ordered.sort(comparator); // List.sort is stable
+        System.out.println("ModController: Ordered " + ordered.size() + " download(s) by " + policy);
+        return ordered;
+    }
+
+    private static Map<DownloadEntry, Long> estimateSizes(List<DownloadEntry> entries, SizeHistory history) {
+        Map<DownloadEntry, Long> sizes = new HashMap<>();
+        Map<DownloadEntry, Future<Long>> probes = new HashMap<>();
+        ExecutorService pool = null;
+
+        for (DownloadEntry entry : entries) {
+            long size = entry.size > 0 ? entry.size : history.get(entry);
+            if (size <= 0 && entry.sourceType == DownloadEntry.SourceType.URL && entry.url != null) {
+                if (pool == null) {
+                    pool = Executors.newFixedThreadPool(HEAD_THREADS, r -> {
+                        Thread t = new Thread(r, "ModController-SizeProbe");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+                String url = entry.url;
+                probes.put(entry, pool.submit(() -> headSize(url)));
+            }
+            sizes.put(entry, Math.max(size, 0));
+        }
+
+        if (pool != null) {
+            pool.shutdown();
+            for (Map.Entry<DownloadEntry, Future<Long>> probe : probes.entrySet()) {
+                try {
+                    sizes.put(probe.getKey(), probe.getValue().get(HEAD_TIMEOUT_MS * 2L, TimeUnit.MILLISECONDS));
+                } catch (Exception ignored) {
+                    // Unknown size; the entry sorts last
+                }
+            }
+            pool.shutdownNow();
+        }
+        return sizes;
+    }
+
+    static long headSize(String url) {
+        try {
+            HttpURLConnection conn = HttpTransport.openIdentity(url);
+            conn.setRequestMethod("HEAD");
+            conn.setConnectTimeout(HEAD_TIMEOUT_MS);
+            conn.setReadTimeout(HEAD_TIMEOUT_MS);
+            try {
+                int code = conn.getResponseCode();
+                return code >= 200 && code < 300 ? Math.max(conn.getContentLengthLong(), 0) : 0;
+            } finally {
+                conn.disconnect();
+            }
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.DownloadEntry;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timings and counters for one entry, filled in by {@link FileDownloader} and collected in the run report.
+ */
+public class EntryMetrics {
+    public String name;
+    public String destination;
+    public String result;
+    // Where the bytes came from: network, mirror, peer, delta, local, archive, unchanged or existing
+    public String source;
+    public String host;
+    public long bytes;
+    public long resolveMs;
+    public long transferMs;
+    public long verifyMs;
+    public long totalMs;
+    public int retries;
+    public boolean hedged; // A second request was started because the first was slow
+    public List<String> cacheHits = new ArrayList<>();
+    transient Object event; // JFR event while the entry is in flight
+    transient long startNanos;
+    transient Path placed; // The file left in place (the marker for archives), recorded for update checks
+
+    public EntryMetrics(DownloadEntry entry) {
+        this.name = entry.name;
+        this.destination = entry.destination;
+    }
+
+    void transferred(String source, String url, long bytes, long transferMs) {
+        this.source = source;
+        this.host = hostOf(url);
+        this.bytes = bytes;
+        this.transferMs = transferMs;
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : "local";
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+
+    static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
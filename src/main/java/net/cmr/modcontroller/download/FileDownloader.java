@@ -1,159 +1,732 @@
 package net.cmr.modcontroller.download;
 
+import net.cmr.modcontroller.config.BackupConfig;
 import net.cmr.modcontroller.config.DownloadEntry;
+import net.cmr.modcontroller.config.TransferConfig;
 import net.cmr.modcontroller.download.api.CurseForgeAPI;
 import net.cmr.modcontroller.download.api.ModrinthAPI;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileDownloader {
     public enum Result {
         SUCCESS, SKIPPED, FAILED
     }
 
+    private static final String ARCHIVE_STATE_DIR = "modcontroller/archives";
+
     private final ModrinthAPI modrinthAPI;
     private final CurseForgeAPI curseForgeAPI;
     private final boolean backupReplacedFiles;
+    private final BandwidthLimiter bandwidthLimiter;
+    private ArtifactIndex artifactIndex;
+    private SizeHistory sizeHistory;
+    private Fingerprints fingerprints;
+    private ModIndex modIndex;
+    private volatile Path hostLockDir; // Null when instances on this machine do not coordinate
+    private long hostWaitMs;
+    private BackupStore backupStore = new BackupStore(null);
+    private TransferConfig transferConfig = new TransferConfig();
+    private HedgedTransfer hedgedTransfer;
+    private List<String> peers = List.of();
+    private int peerTimeoutMs = 2000;
+    // Artifacts fetched in this run by hash (or URL when unhashed). A pending future means another
+    // entry is transferring it; the value is the verified file, or null if that transfer failed.
+    private final Map<String, CompletableFuture<Path>> fetched = new ConcurrentHashMap<>();
+    private final Map<DownloadEntry, Resolved> resolvedEntries = new ConcurrentHashMap<>();
+    private final Set<String> currentFiles = ConcurrentHashMap.newKeySet();
 
     public FileDownloader(String modrinthKey, String curseForgeKey, boolean backupReplacedFiles) {
+        this(modrinthKey, curseForgeKey, backupReplacedFiles, null);
+    }
+
+    public FileDownloader(String modrinthKey, String curseForgeKey, boolean backupReplacedFiles,
+                          BandwidthLimiter bandwidthLimiter) {
         this.modrinthAPI = new ModrinthAPI(modrinthKey);
         this.curseForgeAPI = new CurseForgeAPI(curseForgeKey);
         this.backupReplacedFiles = backupReplacedFiles;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.hedgedTransfer = new HedgedTransfer(transferConfig, this::throttle, bandwidthLimiter != null);
+    }
+
+    public void setTransferConfig(TransferConfig config) {
+        this.transferConfig = config != null ? config : new TransferConfig();
+        this.hedgedTransfer = new HedgedTransfer(transferConfig, this::throttle, bandwidthLimiter != null);
+    }
+
+    public void setArtifactIndex(ArtifactIndex artifactIndex) {
+        this.artifactIndex = artifactIndex;
+    }
+
+    public void setBackupConfig(BackupConfig config) {
+        this.backupStore = new BackupStore(config);
+    }
+
+    public void setSizeHistory(SizeHistory sizeHistory) {
+        this.sizeHistory = sizeHistory;
+    }
+
+    public void setHostCoordination(Path lockDir, long waitTimeoutMs) {
+        this.hostLockDir = lockDir;
+        this.hostWaitMs = waitTimeoutMs;
+    }
+
+    public void setModIndex(ModIndex modIndex) {
+        this.modIndex = modIndex;
+    }
+
+    public void setFingerprints(Fingerprints fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    ModrinthAPI modrinthAPI() {
+        return modrinthAPI;
+    }
+
+    public void setPeers(List<String> peers, int timeoutMs) {
+        this.peers = peers != null ? peers : List.of();
+        this.peerTimeoutMs = timeoutMs;
     }
 
     public Result downloadEntry(DownloadEntry entry, Path gameDir) {
+        return downloadEntry(entry, gameDir, new EntryMetrics(entry));
+    }
+
+    public Result downloadEntry(DownloadEntry entry, Path gameDir, EntryMetrics metrics) {
+        return install(transfer(entry, gameDir, metrics));
+    }
+
+    /**
+     * An entry between the transfer and install stages: its bytes are at the destination but not
+     * yet verified. {@code result} is set instead when the entry already finished in the transfer stage.
+     */
+    static final class Transferred {
+        final DownloadEntry entry;
+        final EntryMetrics metrics;
+        Result result;
+        Resolved resolved;
+        Path destination;
+        String artifactKey;
+        CompletableFuture<Path> flight; // Set while this entry owns the single-flight transfer
+        HostLocks.Held hostLock; // Held while this process fetches the artifact for the whole host
+
+        Transferred(DownloadEntry entry, EntryMetrics metrics) {
+            this.entry = entry;
+            this.metrics = metrics;
+        }
+
+        Transferred finish(Result result) {
+            this.result = result;
+            return this;
+        }
+    }
+
+    private Path providerOf(DownloadEntry entry, Path destination) {
+        if (!entry.addedAsDependency || modIndex == null || entry.projectId == null) return null;
+        List<String> ids = modIndex.projectModIds(entry.projectId);
+        return ids != null ? modIndex.providerOf(ids, destination.getParent(), destination) : null;
+    }
+
+    /**
+     * Transfer stage: resolves the entry (usually from the cache), checks local state and fetches
+     * the bytes. Skipped entries and archives finish here.
+     */
+    Transferred transfer(DownloadEntry entry, Path gameDir, EntryMetrics metrics) {
+        Transferred staged = new Transferred(entry, metrics);
         try {
             if (!entry.enabled) {
                 System.out.println("  Skipping (disabled): " + entry.name);
-                return Result.SKIPPED;
+                return staged.finish(Result.SKIPPED);
+            }
+
+            long resolveStart = System.nanoTime();
+            if (resolvedEntries.containsKey(entry)) metrics.cacheHits.add("resolve");
+            Resolved resolved = resolve(entry);
+            metrics.resolveMs = EntryMetrics.millisSince(resolveStart);
+            staged.resolved = resolved;
+            String downloadUrl = resolved.url;
+            String expectedHash = resolved.hash;
+            String hashType = resolved.hashType;
+
+            if (entry.extract) {
+                return staged.finish(extractArchive(entry, gameDir, downloadUrl, expectedHash, hashType, resolved.filename, metrics));
             }
 
-            String downloadUrl;
-            String expectedHash = null;
-            String hashType = null;
-
-            switch (entry.sourceType) {
-                case URL:
-                    downloadUrl = entry.url;
-                    expectedHash = entry.sha1Hash != null ? entry.sha1Hash : entry.sha512Hash;
-                    hashType = entry.sha1Hash != null ? "SHA-1" : "SHA-512";
-                    break;
-                case MODRINTH:
-                    ModrinthAPI.DownloadInfo modrinthInfo = modrinthAPI.getVersionDownload(entry.versionId);
-                    downloadUrl = modrinthInfo.url;
-                    expectedHash = modrinthInfo.sha512 != null ? modrinthInfo.sha512 : modrinthInfo.sha1;
-                    hashType = modrinthInfo.sha512 != null ? "SHA-512" : "SHA-1";
-                    System.out.println("  Resolved from Modrinth: " + modrinthInfo.filename);
-                    break;
-                case CURSEFORGE:
-                    CurseForgeAPI.DownloadInfo curseForgeInfo = curseForgeAPI.getFileDownload(entry.projectId, entry.fileId);
-                    downloadUrl = curseForgeInfo.url;
-                    expectedHash = curseForgeInfo.sha1;
-                    hashType = "SHA-1";
-                    System.out.println("  Resolved from CurseForge: " + curseForgeInfo.filename);
-                    break;
-                default:
-                    throw new IllegalStateException("Unknown source type: " + entry.sourceType);
-            }
-
-            Path destination = gameDir.resolve(entry.destination);
-
-// Log the resolved destination for debugging
+            Path destination = destinationFor(entry, resolved, gameDir);
+            staged.destination = destination;
             System.out.println("  Resolved destination: " + destination.toAbsolutePath());
 
-// Ensure we actually target the mods folder if user gave just a filename or wrong folder
-            try {
-                String parentName = destination.getParent() != null ? destination.getParent().getFileName().toString() : "";
-                if (destination.toString().endsWith(".jar") && !"mods".equalsIgnoreCase(parentName)) {
-                    Path forced = gameDir.resolve("mods").resolve(destination.getFileName().toString());
-                    System.out.println("  Adjusted destination to mods/: " + forced.toAbsolutePath());
-                    destination = forced;
-                }
-            } catch (Exception ignore) {}
+            // A dependency never replaces a jar someone configured. Once the project's mod IDs are
+            // known, that is decided here, before anything is fetched
+            Path provider = providerOf(entry, destination);
+            if (provider != null) {
+                System.out.println("  Mod already provided by " + provider.getFileName() + ", dependency not installed");
+                metrics.source = "existing";
+                metrics.placed = provider;
+                return staged.finish(Result.SKIPPED);
+            }
 
-            // Check existing file state
-            if (Files.exists(destination)) {
+            // Check existing file state; a damaged archive is always fetched again
+            String damage = Files.exists(destination) && ZipCheck.applies(destination.getFileName().toString())
+                ? ZipCheck.problem(destination) : null;
+            if (damage != null) {
+                System.out.println("  Existing file is damaged (" + damage + "), downloading again: " + entry.name);
+            } else if (Files.exists(destination)) {
                 if (!entry.replaceIfExists) {
                     System.out.println("  File exists and replacement disabled, skipping: " + entry.name);
-                    return Result.SKIPPED;
+                    metrics.source = "existing";
+                    metrics.placed = destination;
+                    return staged.finish(Result.SKIPPED);
                 }
-                if (expectedHash != null) {
-                    String existingHash = calculateHash(destination, hashType);
-                    if (existingHash.equalsIgnoreCase(expectedHash)) {
-                        System.out.println("  File already up to date (hash matches): " + entry.name);
-                        return Result.SKIPPED;
-                    }
+                long checkStart = System.nanoTime();
+                boolean current = matchesExpected(resolved, destination, metrics);
+                metrics.verifyMs += EntryMetrics.millisSince(checkStart);
+                if (current) {
+                    System.out.println("  File already up to date (hash matches): " + entry.name);
+                    metrics.source = "unchanged";
+                    metrics.placed = destination;
+                    if (artifactIndex != null) artifactIndex.record(hashType, expectedHash, destination);
+                    Path lockDir = hostLockDir;
+                    if (lockDir != null) HostLocks.publish(lockDir, ArtifactIndex.key(hashType, expectedHash), destination);
+                    if (sizeHistory != null) sizeHistory.record(entry, Files.size(destination));
+                    return staged.finish(Result.SKIPPED);
                 }
                 if (backupReplacedFiles) {
-                    backupFile(destination);
+                    backupStore.backup(destination);
                 }
             }
 
-            // Remove older versions if destination folder is mods and target looks like a mod jar
-            // Safer heuristic: compute a stable "base key" by stripping trailing classifier(s) and version block
-            try {
-                if (destination.getParent().getFileName().toString().equalsIgnoreCase("mods")) {
-                    String fileName = destination.getFileName().toString();
-                    if (fileName.endsWith(".jar")) {
-
-                        // Compute base key for the new file
-                        String baseKey = computeJarBaseKey(fileName);
-
-                        Path parent = destination.getParent();
-                        final String keepName = fileName;
-
-                        try (var stream = Files.list(parent)) {
-                            stream.filter(p -> {
-                                String n = p.getFileName().toString();
-                                if (!n.endsWith(".jar")) return false;
-                                if (n.equals(keepName)) return false;
-                                // Delete any other JAR whose computed base key matches
-                                return computeJarBaseKey(n).equalsIgnoreCase(baseKey);
-                            }).forEach(p -> {
-                                try {
-                                    Files.deleteIfExists(p);
-                                    System.out.println("  Removed older version: " + p.getFileName());
-                                } catch (Exception ignore) {}
-                            });
-                        }
-                    }
-                }
-            } catch (Exception ignore) {}
-
-            System.out.println("  Downloading from: " + downloadUrl);
             Files.createDirectories(destination.getParent());
-            URL url = new URL(downloadUrl);
-            try (InputStream in = url.openStream()) {
-                Files.copy(in, destination, StandardCopyOption.REPLACE_EXISTING);
+
+            // Only one transfer per artifact: later entries wait for it and reuse the verified file
+            String artifactKey = expectedHash != null ? ArtifactIndex.key(hashType, expectedHash) : "url:" + downloadUrl;
+            staged.artifactKey = artifactKey;
+            CompletableFuture<Path> flight = new CompletableFuture<>();
+            CompletableFuture<Path> earlier = fetched.putIfAbsent(artifactKey, flight);
+            staged.flight = earlier == null ? flight : null;
+
+            boolean patched = false;
+            if (earlier != null) {
+                patched = fanOut(earlier.join(), destination, metrics, "run");
+            }
+            if (!patched && expectedHash != null && artifactIndex != null) {
+                patched = fanOut(artifactIndex.lookup(artifactKey), destination, metrics, "artifact-index");
+            }
+            // Another instance on this machine may be fetching the same artifact: wait for it, then reuse its file
+            Path lockDir = hostLockDir;
+            if (!patched && staged.flight != null && expectedHash != null && lockDir != null) {
+                try {
+                    staged.hostLock = HostLocks.acquire(HostLocks.artifactLock(lockDir, artifactKey), hostWaitMs,
+                                                        "  Another instance is fetching " + entry.name + ", waiting for it");
+                } catch (IOException e) {
+                    // An unusable lock directory only costs the sharing, never the download
+                    System.err.println("ModController: Cannot use lock directory " + lockDir + " (" + e.getMessage() +
+                                       "), continuing without coordination");
+                    hostLockDir = null;
+                }
+                Path shared = staged.hostLock != null ? HostLocks.published(lockDir, artifactKey) : null;
+                if (shared != null && !calculateHash(shared, hashType).equalsIgnoreCase(expectedHash)) {
+                    System.err.println("  Ignoring published copy " + shared + ", its hash does not match");
+                    shared = null;
+                }
+                if (shared != null && Files.exists(destination) && Files.isSameFile(shared, destination)) {
+                    patched = true; // Placed here by another launch while this one waited
+                    metrics.source = "local";
+                    metrics.cacheHits.add("host");
+                } else {
+                    patched = fanOut(shared, destination, metrics, "host");
+                }
+            }
+            if (!patched && entry.delta && Files.exists(destination)) {
+                String blockMapUrl = entry.deltaUrl != null ? entry.deltaUrl : downloadUrl + ".blocks.json";
+                System.out.println("  Trying delta update using " + blockMapUrl);
+                long deltaStart = System.nanoTime();
+                long fetchedBytes = DeltaUpdater.update(downloadUrl, blockMapUrl, destination, bandwidthLimiter);
+                patched = fetchedBytes >= 0;
+                if (patched) metrics.transferred("delta", downloadUrl, fetchedBytes, EntryMetrics.millisSince(deltaStart));
+            }
+            if (!patched && expectedHash != null && !peers.isEmpty()) {
+                patched = fetchFromPeers(expectedHash, hashType, destination, metrics);
+            }
+            if (!patched) {
+                transferWithMirrors(downloadUrl, entry.mirrors, destination, metrics);
+            }
+            return staged;
+
+        } catch (Exception e) {
+            completeFlight(staged, null);
+            return staged.finish(failed(entry, e));
+        }
+    }
+
+    /**
+     * Install stage: verifies size and hash, releases entries waiting on the same artifact and
+     * removes older versions of a replaced mod jar.
+     */
+    Result install(Transferred staged) {
+        if (staged.result != null) return staged.result;
+        DownloadEntry entry = staged.entry;
+        EntryMetrics metrics = staged.metrics;
+        Path destination = staged.destination;
+        String expectedHash = staged.resolved.hash;
+        String hashType = staged.resolved.hashType;
+        long expectedSize = staged.resolved.size;
+        Path verified = null;
+        try {
+            if (expectedSize > 0 && Files.size(destination) != expectedSize) {
+                System.err.println("  WARNING: Size mismatch for " + entry.name +
+                                   " (expected " + expectedSize + ", got " + Files.size(destination) + ")");
             }
 
             // Verify hash if provided
             if (expectedHash != null && !expectedHash.isEmpty()) {
-                String actualHash = calculateHash(destination, hashType);
+                long verifyStart = System.nanoTime();
+                String actualHash = localHash(destination, hashType);
+                metrics.verifyMs += EntryMetrics.millisSince(verifyStart);
+                if (!actualHash.equalsIgnoreCase(expectedHash) && "local".equals(metrics.source)) {
+                    // A reused local copy that no longer matches is a cache miss, not an upstream problem
+                    System.out.println("  Reused copy does not match the expected hash, downloading instead: " + entry.name);
+                    Files.deleteIfExists(destination);
+                    transferWithMirrors(staged.resolved.url, entry.mirrors, destination, metrics);
+                    verifyStart = System.nanoTime();
+                    actualHash = localHash(destination, hashType);
+                    metrics.verifyMs += EntryMetrics.millisSince(verifyStart);
+                }
                 if (!actualHash.equalsIgnoreCase(expectedHash)) {
                     System.err.println("  WARNING: Hash mismatch for " + entry.name);
                     System.err.println("  Expected: " + expectedHash);
                     System.err.println("  Got:      " + actualHash);
                     // Still count as success for availability; pack authors can rely on hash warnings
+                } else {
+                    verified = destination;
+                    if (artifactIndex != null) artifactIndex.record(hashType, expectedHash, destination);
                 }
+            } else {
+                verified = destination;
             }
+        } catch (Exception e) {
+            return failed(entry, e);
+        } finally {
+            completeFlight(staged, verified);
+        }
 
-            System.out.println("  ✓ SUCCESS: " + entry.name);
-            return Result.SUCCESS;
+        // Remove older versions if destination folder is mods and target is a mod jar: other jars that
+        // declare the same mod ID, or, without an index, whose filename reduces to the same base key
+        try {
+            if (destination.getParent().getFileName().toString().equalsIgnoreCase("mods") &&
+                destination.getFileName().toString().endsWith(".jar")) {
+                List<Path> others = modIndex != null ? modIndex.otherVersions(destination) : sameBaseKey(destination);
+                if (modIndex != null && entry.sourceType == DownloadEntry.SourceType.MODRINTH && entry.projectId != null) {
+                    modIndex.recordProject(entry.projectId, modIndex.modIds(destination));
+                }
+                // First install of a dependency's project: its mod IDs are only known now
+                if (entry.addedAsDependency && !others.isEmpty()) {
+                    Files.deleteIfExists(destination);
+                    System.out.println("  Mod already provided by " + others.get(0).getFileName() + ", dependency not installed");
+                    metrics.placed = others.get(0);
+                    return Result.SKIPPED;
+                }
+                for (Path older : others) {
+                    try {
+                        Files.deleteIfExists(older);
+                        System.out.println("  Removed older version: " + older.getFileName());
+                    } catch (Exception ignore) {}
+                }
+            }
+        } catch (Exception ignore) {}
 
+        try {
+            if (sizeHistory != null) sizeHistory.record(entry, Files.size(destination));
         } catch (Exception e) {
-            System.err.println("  ✗ FAILED: " + entry.name);
-            System.err.println("  Error: " + e.getMessage());
-            e.printStackTrace();
-            return Result.FAILED;
+            return failed(entry, e);
+        }
+        metrics.placed = destination;
+        System.out.println("  ✓ SUCCESS: " + entry.name);
+        return Result.SUCCESS;
+    }
+
+    /**
+     * Deletes a file that no configured entry wants any more, keeping a backup first if enabled.
+     */
+    void removeOrphan(Path file) throws IOException {
+        if (backupReplacedFiles) backupStore.backup(file);
+        Files.deleteIfExists(file);
+    }
+
+    private void completeFlight(Transferred staged, Path verified) {
+        if (staged.hostLock != null) {
+            Path lockDir = hostLockDir;
+            if (verified != null && staged.hostLock.locked() && lockDir != null) HostLocks.publish(lockDir, staged.artifactKey, verified);
+            staged.hostLock.close();
+            staged.hostLock = null;
+        }
+        if (staged.flight == null) return;
+        staged.flight.complete(verified);
+        if (verified == null) fetched.remove(staged.artifactKey, staged.flight);
+        staged.flight = null;
+    }
+
+    private static Result failed(DownloadEntry entry, Exception e) {
+        System.err.println("  ✗ FAILED: " + entry.name);
+        System.err.println("  Error: " + e.getMessage());
+        e.printStackTrace();
+        return Result.FAILED;
+    }
+
+    /**
+     * Where the download URL, hash and size come from for an entry. API lookups happen once per
+     * entry per run, so a preflight pass and the download itself share them.
+     */
+    static final class Resolved {
+        final String url;
+        final String hash;
+        final String hashType;
+        final String filename;
+        final long size; // 0 if unknown
+
+        Resolved(String url, String hash, String hashType, String filename, long size) {
+            this.url = url;
+            this.hash = hash;
+            this.hashType = hashType;
+            this.filename = filename;
+            this.size = size;
+        }
+    }
+
+    Resolved resolve(DownloadEntry entry) throws IOException {
+        Resolved cached = resolvedEntries.get(entry);
+        if (cached != null) return cached;
+
+        Resolved resolved;
+        switch (entry.sourceType) {
+            case URL:
+                resolved = new Resolved(entry.url,
+                    entry.sha1Hash != null ? entry.sha1Hash : entry.sha512Hash,
+                    entry.sha1Hash != null ? "SHA-1" : "SHA-512",
+                    filenameFromUrl(entry.url), entry.size);
+                break;
+            case MODRINTH:
+                ModrinthAPI.DownloadInfo modrinthInfo = modrinthAPI.getVersionDownload(entry.versionId);
+                resolved = new Resolved(modrinthInfo.url,
+                    modrinthInfo.sha512 != null ? modrinthInfo.sha512 : modrinthInfo.sha1,
+                    modrinthInfo.sha512 != null ? "SHA-512" : "SHA-1",
+                    modrinthInfo.filename, entry.size > 0 ? entry.size : modrinthInfo.size);
+                System.out.println("  Resolved from Modrinth: " + modrinthInfo.filename);
+                break;
+            case CURSEFORGE:
+                CurseForgeAPI.DownloadInfo curseForgeInfo = curseForgeAPI.getFileDownload(entry.projectId, entry.fileId);
+                resolved = new Resolved(curseForgeInfo.url, curseForgeInfo.sha1, "SHA-1",
+                    curseForgeInfo.filename, entry.size > 0 ? entry.size : curseForgeInfo.size);
+                System.out.println("  Resolved from CurseForge: " + curseForgeInfo.filename);
+                break;
+            default:
+                throw new IllegalStateException("Unknown source type: " + entry.sourceType);
+        }
+        resolvedEntries.put(entry, resolved);
+        return resolved;
+    }
+
+    Path destinationFor(DownloadEntry entry, Resolved resolved, Path gameDir) throws IOException {
+        // A destination ending in '/' names a folder; the file keeps its upstream name
+        String destinationPath = entry.destination;
+        if (destinationPath.endsWith("/") || destinationPath.endsWith("\\")) {
+            String name = resolved.filename;
+            // The name comes from the server or a decoded URL, so it must not add path segments
+            if (name == null || name.isBlank() || name.contains("/") || name.contains("\\") || name.contains("..")) {
+                throw new IOException("Unsafe file name from source: " + name);
+            }
+            destinationPath = destinationPath + name;
+        }
+
+        Path destination = gameDir.resolve(destinationPath);
+
+        // Ensure we actually target the mods folder if user gave just a filename or wrong folder
+        try {
+            String parentName = destination.getParent() != null ? destination.getParent().getFileName().toString() : "";
+            if (destination.toString().endsWith(".jar") && !"mods".equalsIgnoreCase(parentName)) {
+                Path forced = gameDir.resolve("mods").resolve(destination.getFileName().toString());
+                System.out.println("  Adjusted destination to mods/: " + forced.toAbsolutePath());
+                destination = forced;
+            }
+        } catch (Exception ignore) {}
+
+        Path root = gameDir.toAbsolutePath().normalize();
+        if (!destination.toAbsolutePath().normalize().startsWith(root)) {
+            throw new IOException("Destination is outside the game directory: " + destinationPath);
+        }
+        return destination;
+    }
+
+    /**
+     * True if the entry would be skipped without any transfer.
+     */
+    boolean isCurrent(DownloadEntry entry, Resolved resolved, Path gameDir) throws Exception {
+        if (entry.extract) {
+            Path marker = archiveMarker(entry, gameDir.toAbsolutePath().normalize());
+            return Files.exists(marker) && (!entry.replaceIfExists ||
+                (resolved.hash != null && Files.readString(marker).trim().equalsIgnoreCase(resolved.hash)));
+        }
+        Path destination = destinationFor(entry, resolved, gameDir);
+        return Files.exists(destination) && (!entry.replaceIfExists || matchesExpected(resolved, destination, null));
+    }
+
+    // Hash check of an existing file. Matches are remembered by size and mtime for the rest of the run.
+    private boolean matchesExpected(Resolved resolved, Path destination, EntryMetrics metrics) throws Exception {
+        if (resolved.hash == null) return false;
+        long size = Files.size(destination);
+        // A size mismatch already proves the file changed; skip hashing it
+        if (resolved.size > 0 && size != resolved.size) return false;
+        String stamp = destination.toAbsolutePath().normalize() + "|" + size + "|" +
+                       Files.getLastModifiedTime(destination).toMillis() + "|" + resolved.hash.toLowerCase();
+        if (currentFiles.contains(stamp)) {
+            if (metrics != null) metrics.cacheHits.add("hash");
+            return true;
+        }
+        if (!localHash(destination, resolved.hashType).equalsIgnoreCase(resolved.hash)) return false;
+        currentFiles.add(stamp);
+        return true;
+    }
+
+    private static Path archiveMarker(DownloadEntry entry, Path root) {
+        return root.resolve(ARCHIVE_STATE_DIR)
+            .resolve(UUID.nameUUIDFromBytes((entry.name + "|" + entry.destination).getBytes(StandardCharsets.UTF_8)) + ".hash");
+    }
+
+    private Result extractArchive(DownloadEntry entry, Path gameDir, String downloadUrl, String expectedHash,
+                                  String hashType, String filename, EntryMetrics metrics) throws Exception {
+        Path root = gameDir.toAbsolutePath().normalize();
+        Path targetDir = root.resolve(entry.destination).normalize();
+        if (!targetDir.startsWith(root)) {
+            throw new IOException("Archive destination is outside the game directory: " + entry.destination);
+        }
+        System.out.println("  Extracting into: " + targetDir);
+
+        // Remembers which archive was last extracted for this entry
+        Path marker = archiveMarker(entry, root);
+        if (Files.exists(marker)) {
+            if (!entry.replaceIfExists) {
+                System.out.println("  Archive already extracted and replacement disabled, skipping: " + entry.name);
+                metrics.source = "existing";
+                metrics.placed = marker;
+                return Result.SKIPPED;
+            }
+            if (expectedHash != null && Files.readString(marker).trim().equalsIgnoreCase(expectedHash)) {
+                System.out.println("  Archive already extracted (hash matches): " + entry.name);
+                metrics.source = "unchanged";
+                metrics.placed = marker;
+                return Result.SKIPPED;
+            }
+        }
+
+        String format = ArchiveExtractor.detectFormat(entry.archiveFormat, filename);
+        System.out.println("  Downloading " + format + " archive from: " + downloadUrl);
+        MessageDigest digest = expectedHash != null ? MessageDigest.getInstance(hashType) : null;
+        // Nothing reaches the target folder before the whole archive has been verified
+        Path staging = root.resolve("modcontroller/extract").resolve(UUID.randomUUID().toString());
+        try {
+            ArchiveExtractor.Stats stats;
+            long transferStart = System.nanoTime();
+            CountingInputStream counted;
+            try (InputStream raw = counted = new CountingInputStream(throttle(HttpTransport.openStream(downloadUrl)));
+                 InputStream in = digest != null ? new DigestInputStream(raw, digest) : raw) {
+                stats = ArchiveExtractor.extract(new BufferedInputStream(in, 64 * 1024), format, targetDir, staging,
+                                                 entry.stripComponents, entry.skipUnchanged);
+                // Consume trailing data (e.g. the zip central directory) so the digest covers the whole archive
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            metrics.transferred("archive", downloadUrl, counted.count, EntryMetrics.millisSince(transferStart));
+
+            if (digest != null) {
+                StringBuilder sb = new StringBuilder();
+                for (byte b : digest.digest()) sb.append(String.format("%02x", b));
+                if (!sb.toString().equalsIgnoreCase(expectedHash)) {
+                    System.err.println("  ✗ Hash mismatch for " + entry.name + ", nothing was extracted");
+                    System.err.println("  Expected: " + expectedHash);
+                    System.err.println("  Got:      " + sb);
+                    return Result.FAILED;
+                }
+            }
+            ArchiveExtractor.commit(staging, targetDir);
+            System.out.println("  Extracted " + stats.written.get() + " file(s), " + stats.unchanged.get() +
+                               " unchanged, " + stats.rejected.get() + " rejected");
+        } finally {
+            ArchiveExtractor.deleteStaging(staging);
+        }
+
+        // Remembers the archive, so it is not fetched again while the hash stays the same
+        Files.createDirectories(marker.getParent());
+        Files.writeString(marker, expectedHash != null ? expectedHash : "");
+        metrics.placed = marker;
+
+        System.out.println("  ✓ SUCCESS: " + entry.name);
+        return Result.SUCCESS;
+    }
+
+    // Fetches a known-hash artifact from a fleet peer. Peer data is only accepted if its hash matches.
+    private boolean fetchFromPeers(String expectedHash, String hashType, Path destination, EntryMetrics metrics) {
+        Path temp = destination.resolveSibling(destination.getFileName() + ".peer.tmp");
+        String key = ArtifactIndex.key(hashType, expectedHash).replace(':', '/');
+        for (String peer : peers) {
+            String peerUrl = (peer.endsWith("/") ? peer : peer + "/") + "artifacts/" + key;
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection conn = HttpTransport.open(peerUrl);
+                conn.setConnectTimeout(peerTimeoutMs);
+                conn.setReadTimeout(peerTimeoutMs);
+                long bytes;
+                try (InputStream in = throttle(HttpTransport.body(conn))) {
+                    bytes = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                long transferMs = EntryMetrics.millisSince(start);
+                if (!calculateHash(temp, hashType).equalsIgnoreCase(expectedHash)) {
+                    System.err.println("  Peer " + peer + " returned mismatching data, ignoring");
+                    continue;
+                }
+                Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+                metrics.transferred("peer", peerUrl, bytes, transferMs);
+                System.out.println("  Fetched from peer: " + peer);
+                return true;
+            } catch (Exception e) {
+                System.out.println("  Peer " + peer + " unavailable: " + e.getMessage());
+            } finally {
+                try { Files.deleteIfExists(temp); } catch (IOException ignored) {}
+            }
+        }
+        return false;
+    }
+
+    // Places an already verified artifact at another destination. Jars and zips are hardlinked
+    // since they are never edited in place; other files are copied so each destination stays independent.
+    private boolean fanOut(Path source, Path destination, EntryMetrics metrics, String cache) {
+        if (source == null || !Files.isRegularFile(source)) return false;
+        try {
+            if (Files.exists(destination) && Files.isSameFile(source, destination)) return false;
+            Path temp = destination.resolveSibling(destination.getFileName() + ".part");
+            Files.deleteIfExists(temp);
+            String name = destination.getFileName().toString().toLowerCase();
+            boolean linked = false;
+            if (name.endsWith(".jar") || name.endsWith(".zip")) {
+                try {
+                    Files.createLink(temp, source);
+                    linked = true;
+                } catch (IOException | UnsupportedOperationException e) {
+                    // Different file store or no hardlink support; copy instead
+                }
+            }
+            if (!linked) Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("  Reused local copy (" + (linked ? "hardlink" : "copy") + "): " + source.getFileName());
+            metrics.source = "local";
+            metrics.cacheHits.add(cache);
+            return true;
+        } catch (IOException e) {
+            System.err.println("  Could not reuse " + source + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void transferWithMirrors(String primaryUrl, List<String> mirrors, Path destination,
+                                     EntryMetrics metrics) throws IOException {
+        List<String> urls = new ArrayList<>();
+        urls.add(primaryUrl);
+        if (mirrors != null) urls.addAll(mirrors);
+
+        IOException lastError = null;
+        int rounds = 1 + Math.max(0, transferConfig.retries);
+        for (int round = 0; round < rounds; round++) {
+            if (round > 0) {
+                System.out.println("  Retrying (round " + (round + 1) + " of " + rounds + ")");
+                try {
+                    Thread.sleep(500L * round);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+            for (int i = 0; i < urls.size(); i++) {
+                String candidate = urls.get(i);
+                // Hedge against the next source if there is one, otherwise a fresh connection to the same URL
+                String alternate = urls.get((i + 1) % urls.size());
+                System.out.println("  Downloading from: " + candidate);
+                // Download next to the destination and swap it in, so an interrupted run never leaves a partial file
+                long start = System.nanoTime();
+                try {
+                    HedgedTransfer.Outcome outcome = hedgedTransfer.fetch(candidate, alternate, destination);
+                    metrics.transferred(outcome.url.equals(primaryUrl) ? "network" : "mirror", outcome.url,
+                                        outcome.bytes, EntryMetrics.millisSince(start));
+                    metrics.hedged = outcome.hedged;
+                    return;
+                } catch (IOException e) {
+                    System.err.println("  Download from " + candidate + " failed: " + e.getMessage());
+                    metrics.retries++;
+                    lastError = e;
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    private InputStream throttle(InputStream in) {
+        return bandwidthLimiter != null ? bandwidthLimiter.wrap(in) : in;
+    }
+
+    private static String filenameFromUrl(String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return URLDecoder.decode(name, StandardCharsets.UTF_8);
+    }
+
+    private static List<Path> sameBaseKey(Path jar) throws IOException {
+        String keepName = jar.getFileName().toString();
+        String baseKey = computeJarBaseKey(keepName);
+        try (var stream = Files.list(jar.getParent())) {
+            return stream.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.endsWith(".jar") && !n.equals(keepName) && computeJarBaseKey(n).equalsIgnoreCase(baseKey);
+            }).toList();
         }
     }
 
@@ -163,7 +736,7 @@ public class FileDownloader {
     //  twilightforest-1.21.1-4.7.3196-universal.jar -> twilightforest
     //  ftb-teams-neoforge-2101.1.4.jar -> ftb-teams-neoforge
     //  architectury-13.0.8-neoforge.jar -> architectury
-    private static String computeJarBaseKey(String fileName) {
+    static String computeJarBaseKey(String fileName) {
         String name = fileName;
         if (name.toLowerCase().endsWith(".jar")) {
             name = name.substring(0, name.length() - 4);
@@ -187,14 +760,9 @@ public class FileDownloader {
         return name;
     }
 
-    private void backupFile(Path file) throws IOException {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
-        Path backupDir = file.getParent().resolve(".modcontroller-backups");
-        Files.createDirectories(backupDir);
-        String filename = file.getFileName().toString();
-        Path backupPath = backupDir.resolve(filename + "." + timestamp + ".backup");
-        Files.copy(file, backupPath, StandardCopyOption.REPLACE_EXISTING);
-        System.out.println("  Backed up existing file to: " + backupPath.getFileName());
+    // Digest of a file that stays in place; stored so it is computed once, not on every launch
+    private String localHash(Path file, String algorithm) throws Exception {
+        return fingerprints != null ? fingerprints.digest(file, algorithm) : calculateHash(file, algorithm);
     }
 
     private String calculateHash(Path file, String algorithm) throws Exception {
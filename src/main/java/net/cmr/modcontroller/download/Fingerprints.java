@@ -0,0 +1,163 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+
+/**
+ * Remembers the cryptographic digests of local files, so each file is hashed with SHA-1/SHA-512
+ * once rather than on every launch. A file whose size and mtime still match its record is trusted
+ * as is. If only the mtime changed (a copy, touch or restore), a fast non-cryptographic checksum
+ * tells whether the content did too before anything is rehashed.
+ */
+public class Fingerprints {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String STORE_FILE = "modcontroller/fingerprints.json";
+    private static final String FAST_NAME = "xxh64";
+    private static final Supplier<Checksum> FAST = XxHash64::new;
+
+    private static final class Record {
+        long size;
+        long mtime;
+        String fast;
+        Map<String, String> digests = new HashMap<>(); // algorithm, e.g. "SHA-1" -> hex
+    }
+
+    private static final class Store {
+        @SerializedName("fast_hash")
+        String fastHash = FAST_NAME;
+        Map<String, Record> files = new LinkedHashMap<>(); // Relative to the game directory
+    }
+
+    private final Path gameDir;
+    private final Store store;
+    private boolean dirty;
+
+    private Fingerprints(Path gameDir, Store store) {
+        this.gameDir = gameDir.toAbsolutePath().normalize();
+        this.store = store;
+    }
+
+    public static Fingerprints load(Path gameDir) {
+        Path file = gameDir.resolve(STORE_FILE);
+        Store store = null;
+        if (Files.exists(file)) {
+            try {
+                store = GSON.fromJson(Files.readString(file), Store.class);
+            } catch (Exception e) {
+                System.err.println("ModController: Ignoring unreadable fingerprint store: " + e.getMessage());
+            }
+        }
+        // Records made with another fast hash cannot be compared, so they are dropped
+        if (store == null || store.files == null || !FAST_NAME.equals(store.fastHash)) store = new Store();
+        return new Fingerprints(gameDir, store);
+    }
+
+    /**
+     * Hex digest of a file for a MessageDigest algorithm, reusing the stored one when the file is unchanged.
+     */
+    public String digest(Path file, String algorithm) throws Exception {
+        String key = key(file);
+        long size = Files.size(file);
+        long mtime = Files.getLastModifiedTime(file).toMillis();
+        // Records are shared between threads, so what is needed is copied out under the lock
+        String stored = null;
+        String knownFast = null;
+        synchronized (this) {
+            Record known = store.files.get(key);
+            if (known != null && known.size == size) {
+                stored = known.digests.get(algorithm);
+                if (stored != null && known.mtime == mtime) return stored;
+                knownFast = known.fast;
+            }
+        }
+
+        if (stored != null && knownFast != null && knownFast.equals(fastHash(file))) {
+            synchronized (this) {
+                Record known = store.files.get(key);
+                if (known != null && known.size == size && knownFast.equals(known.fast)) {
+                    known.mtime = mtime;
+                    dirty = true;
+                }
+            }
+            return stored;
+        }
+
+        // Unknown or changed: one pass computes both the requested digest and the fast checksum
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        Checksum fast = FAST.get();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                fast.update(buffer, 0, read);
+            }
+        }
+        String hex = hex(digest.digest());
+        String fastHex = Long.toHexString(fast.getValue());
+        synchronized (this) {
+            Record record = store.files.get(key);
+            // Digests of other algorithms stay valid only if the content did not change
+            if (record == null || record.size != size || !fastHex.equals(record.fast)) {
+                record = new Record();
+                store.files.put(key, record);
+            }
+            record.size = size;
+            record.mtime = mtime;
+            record.fast = fastHex;
+            record.digests.put(algorithm, hex);
+            dirty = true;
+        }
+        return hex;
+    }
+
+    public synchronized void save() {
+        if (!dirty) return;
+        store.files.entrySet().removeIf(e -> !Files.isRegularFile(gameDir.resolve(e.getKey())));
+        Path file = gameDir.resolve(STORE_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(store));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to save fingerprints: " + e.getMessage());
+        }
+    }
+
+    private String key(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path relative = absolute.startsWith(gameDir) ? gameDir.relativize(absolute) : absolute;
+        return relative.toString().replace('\\', '/');
+    }
+
+    static String fastHash(Path file) throws IOException {
+        Checksum fast = FAST.get();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) fast.update(buffer, 0, read);
+        }
+        return Long.toHexString(fast.getValue());
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.TransferConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Downloads one URL to a file with stall detection and optional hedging. A transfer that stays
+ * below the minimum speed for a whole window fails so the caller can retry. With hedging on, a
+ * transfer that is still slower than most earlier ones after a short delay gets a second request
+ * (to a mirror or over a fresh connection); the first to finish is kept and the other cancelled.
+ */
+class HedgedTransfer {
+    private static final int BUFFER = 64 * 1024;
+    private static final long MIN_SAMPLE_BYTES = 256 * 1024; // Smaller files say little about throughput
+    private static final int MIN_SAMPLES = 3;
+    private static final Executor EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ModController-Transfer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final TransferConfig config;
+    private final UnaryOperator<InputStream> throttle;
+    private final boolean throttled;
+    private final List<Double> speeds = Collections.synchronizedList(new ArrayList<>()); // bytes/s of finished transfers
+
+    HedgedTransfer(TransferConfig config, UnaryOperator<InputStream> throttle, boolean throttled) {
+        this.config = config != null ? config : new TransferConfig();
+        this.throttle = throttle;
+        this.throttled = throttled;
+    }
+
+    static final class Outcome {
+        final String url;
+        final long bytes;
+        final boolean hedged;
+
+        Outcome(String url, long bytes, boolean hedged) {
+            this.url = url;
+            this.bytes = bytes;
+            this.hedged = hedged;
+        }
+    }
+
+    /**
+     * Downloads {@code url} into {@code destination} via a temp file. {@code alternate} is used
+     * for the hedge request and may be the same URL.
+     */
+    Outcome fetch(String url, String alternate, Path destination) throws IOException {
+        Path primaryTemp = destination.resolveSibling(destination.getFileName() + ".part");
+        Attempt primary = new Attempt(url, primaryTemp);
+        if (!config.hedge || throttled) {
+            try {
+                primary.run();
+                return finish(primary, destination, false);
+            } finally {
+                try { Files.deleteIfExists(primaryTemp); } catch (IOException ignored) {}
+            }
+        }
+
+        Path hedgeTemp = destination.resolveSibling(destination.getFileName() + ".hedge.part");
+        CompletableFuture<Attempt> first = new CompletableFuture<>();
+        CompletableFuture<Void> primaryDone = CompletableFuture.runAsync(primary::runUnchecked, EXECUTOR);
+        primaryDone.whenComplete((v, e) -> { if (e == null) first.complete(primary); });
+
+        Attempt hedge = null;
+        CompletableFuture<Void> hedgeDone = null;
+        try {
+            while (true) {
+                try {
+                    Attempt winner = first.get(250, TimeUnit.MILLISECONDS);
+                    Attempt loser = winner == primary ? hedge : primary;
+                    if (loser != null) loser.cancel();
+                    if (winner == hedge) System.out.println("  Hedged request won: " + hedge.url);
+                    return finish(winner, destination, hedge != null);
+                } catch (TimeoutException e) {
+                    // Still running
+                }
+
+                // A failed primary with no hedge running goes back to the caller's retry loop
+                if (primaryDone.isCompletedExceptionally() && (hedgeDone == null || hedgeDone.isCompletedExceptionally())) {
+                    throw failure(primaryDone);
+                }
+
+                if (hedge == null && isSlow(primary)) {
+                    hedge = new Attempt(alternate, hedgeTemp);
+                    System.out.println("  Transfer slow (" + (long) (primary.speed() / 1024) + " KiB/s), hedging with " + alternate);
+                    Attempt started = hedge;
+                    hedgeDone = CompletableFuture.runAsync(started::runUnchecked, EXECUTOR);
+                    hedgeDone.whenComplete((v, e) -> { if (e == null) first.complete(started); });
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause()); // Not reached: only successful attempts complete the future
+        } finally {
+            primary.cancel();
+            if (hedge != null) hedge.cancel();
+            try { Files.deleteIfExists(primaryTemp); } catch (IOException ignored) {}
+            try { Files.deleteIfExists(hedgeTemp); } catch (IOException ignored) {}
+        }
+    }
+
+    private static IOException failure(CompletableFuture<Void> done) {
+        try {
+            done.join();
+            return new IOException("Transfer failed");
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause.getCause() instanceof IOException io) return io;
+            return cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private Outcome finish(Attempt winner, Path destination, boolean hedged) throws IOException {
+        // A damaged archive fails like any other transfer, so the caller moves on to a mirror or retries
+        ZipCheck.verify(winner.temp, destination.getFileName().toString());
+        Files.move(winner.temp, destination, StandardCopyOption.REPLACE_EXISTING);
+        long elapsedNanos = System.nanoTime() - winner.startNanos;
+        if (winner.bytes.get() >= MIN_SAMPLE_BYTES && elapsedNanos > 0) {
+            speeds.add(winner.bytes.get() * 1e9 / elapsedNanos);
+        }
+        return new Outcome(winner.url, winner.bytes.get(), hedged);
+    }
+
+    private boolean isSlow(Attempt attempt) {
+        if (attempt.elapsedMs() < config.hedgeDelayMs) return false;
+        double threshold;
+        synchronized (speeds) {
+            if (speeds.size() < MIN_SAMPLES) return false;
+            List<Double> sorted = new ArrayList<>(speeds);
+            Collections.sort(sorted);
+            int index = Math.min(sorted.size() - 1, Math.max(0, sorted.size() * config.hedgePercentile / 100));
+            threshold = sorted.get(index);
+        }
+        return attempt.speed() < threshold;
+    }
+
+    private final class Attempt {
+        final String url;
+        final Path temp;
+        final AtomicLong bytes = new AtomicLong();
+        volatile long startNanos = System.nanoTime();
+        private volatile boolean cancelled;
+        private volatile InputStream stream;
+
+        Attempt(String url, Path temp) {
+            this.url = url;
+            this.temp = temp;
+        }
+
+        void run() throws IOException {
+            startNanos = System.nanoTime();
+            long minBytesPerSecond = throttled ? 0 : config.stallMinKibPerSec * 1024;
+            long windowStart = startNanos;
+            long windowBytes = 0;
+            try (InputStream in = throttle.apply(HttpTransport.openStream(url))) {
+                stream = in;
+                // Cancelled while connecting: fetch() may already have cleaned up, so don't create the temp
+                if (cancelled) throw new IOException("Cancelled");
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    byte[] buffer = new byte[BUFFER];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        if (cancelled) throw new IOException("Cancelled");
+                        out.write(buffer, 0, read);
+                        bytes.addAndGet(read);
+                        windowBytes += read;
+
+                        long now = System.nanoTime();
+                        long windowMs = (now - windowStart) / 1_000_000;
+                        if (minBytesPerSecond > 0 && windowMs >= config.stallWindowMs) {
+                            long rate = windowBytes * 1000 / windowMs;
+                            if (rate < minBytesPerSecond) {
+                                throw new IOException("Transfer stalled at " + rate / 1024 + " KiB/s");
+                            }
+                            windowStart = now;
+                            windowBytes = 0;
+                        }
+                    }
+                }
+                if (cancelled) throw new IOException("Cancelled");
+            } catch (IOException e) {
+                // The loser of a hedge can fail after fetch() has returned, so it removes its own temp
+                try { Files.deleteIfExists(temp); } catch (IOException ignored) {}
+                if (cancelled) throw new IOException("Cancelled");
+                throw e;
+            }
+        }
+
+        void runUnchecked() {
+            try {
+                run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Closing the stream from another thread unblocks a pending read
+        void cancel() {
+            cancelled = true;
+            InputStream in = stream;
+            if (in != null) {
+                try { in.close(); } catch (IOException ignored) {}
+            }
+        }
+
+        long elapsedMs() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        double speed() {
+            long ms = elapsedMs();
+            return ms > 0 ? bytes.get() * 1000.0 / ms : 0;
+        }
+    }
+}
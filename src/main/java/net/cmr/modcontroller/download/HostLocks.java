@@ -0,0 +1,158 @@
+package net.cmr.modcontroller.download;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * File locks that coordinate ModController processes on one machine. The OS drops a lock when
+ * its process dies, so a crashed instance never blocks the others. Also keeps, per artifact, a
+ * small record of where the last holder placed the verified file, so waiters can reuse it.
+ * Records are only hints: a published file is hashed before it is reused.
+ */
+final class HostLocks {
+    private static final long POLL_MS = 200;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private HostLocks() {}
+
+    /**
+     * Default lock directory: per user under the temp directory, readable and writable by its
+     * owner only. Returns null if that cannot be ensured, e.g. because another user created the
+     * directory first; coordination is then skipped.
+     */
+    static Path privateDir() {
+        String user = System.getProperty("user.name", "user").replaceAll("[^A-Za-z0-9._-]", "_");
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"), "modcontroller-artifacts-" + user);
+        boolean posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+        try {
+            if (Files.isSymbolicLink(dir)) return null;
+            if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    if (posix) Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                    else Files.createDirectory(dir);
+                } catch (FileAlreadyExistsException ignored) {
+                    // Created concurrently; checked below like any existing directory
+                }
+            }
+            // A file created in the directory is ours, so the directory must have the same owner
+            Path probe = Files.createTempFile(dir, "owner", ".tmp");
+            try {
+                if (!Files.getOwner(probe).equals(Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS))) return null;
+            } finally {
+                Files.deleteIfExists(probe);
+            }
+            if (posix && !Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS).equals(OWNER_ONLY)) {
+                Files.setPosixFilePermissions(dir, OWNER_ONLY);
+            }
+            return dir;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A held lock, or an empty one if the wait timed out. Closing releases it.
+     */
+    static final class Held implements AutoCloseable {
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private Held(FileChannel channel, FileLock lock) {
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        boolean locked() {
+            return lock != null;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (lock != null) lock.release();
+                if (channel != null) channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for an exclusive lock on the file, logging once if another process holds it.
+     */
+    static Held acquire(Path lockFile, long timeoutMs, String waitMessage) throws IOException, InterruptedException {
+        Files.createDirectories(lockFile.getParent());
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        boolean logged = false;
+        try {
+            while (true) {
+                FileLock lock;
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    lock = null; // Held elsewhere in this JVM
+                }
+                if (lock != null) return new Held(channel, lock);
+                if (System.currentTimeMillis() >= deadline) {
+                    System.err.println("ModController: Gave up waiting for " + lockFile.getFileName() + ", continuing without it");
+                    channel.close();
+                    return new Held(null, null);
+                }
+                if (!logged && waitMessage != null) {
+                    System.out.println(waitMessage);
+                    logged = true;
+                }
+                Thread.sleep(POLL_MS);
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static Path artifactLock(Path dir, String artifactKey) {
+        return dir.resolve(fileName(artifactKey) + ".lock");
+    }
+
+    /**
+     * Where another process last placed this artifact, or null if unknown or gone.
+     */
+    static Path published(Path dir, String artifactKey) {
+        Path record = dir.resolve(fileName(artifactKey) + ".path");
+        try {
+            if (!Files.exists(record)) return null;
+            String[] parts = Files.readString(record).trim().split("\n");
+            Path file = Path.of(parts[0]);
+            if (!Files.isRegularFile(file) || Files.size(file) != Long.parseLong(parts[1].trim())) return null;
+            return file;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static void publish(Path dir, String artifactKey, Path file) {
+        Path record = dir.resolve(fileName(artifactKey) + ".path");
+        try {
+            Path temp = record.resolveSibling(record.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            Files.writeString(temp, file.toAbsolutePath().normalize() + "\n" + Files.size(file));
+            Files.move(temp, record, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.err.println("ModController: Failed to publish " + file.getFileName() + " to other instances: " + e.getMessage());
+        }
+    }
+
+    // "sha512:ab12..." -> "sha512-ab12..."
+    private static String fileName(String artifactKey) {
+        return artifactKey.replaceAll("[^A-Za-z0-9._-]", "-");
+    }
+}
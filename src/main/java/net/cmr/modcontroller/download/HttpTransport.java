@@ -0,0 +1,140 @@
+package net.cmr.modcontroller.download;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shared HTTP setup for the API clients and file transfers. Requests advertise gzip (and brotli
+ * when a decoder is on the classpath) and {@link #body} transparently decodes the response, so
+ * callers, and hash checks, always see the original bytes.
+ */
+public final class HttpTransport {
+    public static final String USER_AGENT = "ModController/1.0";
+
+    private static final Constructor<?> BROTLI_STREAM = findBrotli();
+    private static final String ACCEPT_ENCODING = BROTLI_STREAM != null ? "br, gzip" : "gzip";
+
+    // Without these a hung server blocks a read forever, and with it the game launch
+    private static volatile int connectTimeoutMs = 10000;
+    private static volatile int readTimeoutMs = 30000;
+
+    private HttpTransport() {}
+
+    public static void setTimeouts(int connectMs, int readMs) {
+        connectTimeoutMs = connectMs;
+        readTimeoutMs = readMs;
+    }
+
+    public static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(connectTimeoutMs);
+        conn.setReadTimeout(readTimeoutMs);
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        conn.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+        return conn;
+    }
+
+    /**
+     * Opens a connection that asks for the raw representation. Byte-range requests must use this,
+     * since ranges of an encoded response address the encoded bytes.
+     */
+    public static HttpURLConnection openIdentity(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(connectTimeoutMs);
+        conn.setReadTimeout(readTimeoutMs);
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        return conn;
+    }
+
+    /**
+     * Response body with any Content-Encoding removed. Throws for non-2xx responses.
+     */
+    public static InputStream body(HttpURLConnection conn) throws IOException {
+        int code = conn.getResponseCode();
+        if (code < 200 || code >= 300) {
+            throw new IOException("HTTP " + code + " from " + conn.getURL());
+        }
+        InputStream raw = conn.getInputStream();
+        String encoding = conn.getContentEncoding();
+        if (encoding == null) return raw;
+
+        switch (encoding.trim().toLowerCase()) {
+            case "gzip", "x-gzip":
+                return new GZIPInputStream(raw, 64 * 1024);
+            case "deflate":
+                return inflate(raw);
+            case "br":
+                if (BROTLI_STREAM == null) {
+                    raw.close();
+                    throw new IOException("Server sent brotli without it being offered");
+                }
+                try {
+                    return (InputStream) BROTLI_STREAM.newInstance(raw);
+                } catch (ReflectiveOperationException e) {
+                    raw.close();
+                    throw new IOException("Failed to start brotli decoder", e);
+                }
+            case "identity", "":
+                return raw;
+            default:
+                raw.close();
+                throw new IOException("Unsupported Content-Encoding: " + encoding);
+        }
+    }
+
+    // Not offered, but some servers send it anyway, and some of those send a raw deflate stream without the zlib wrapper
+    private static InputStream inflate(InputStream raw) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(raw, 64 * 1024);
+        in.mark(2);
+        int cmf = in.read();
+        int flg = in.read();
+        in.reset();
+        boolean zlib = cmf >= 0 && flg >= 0 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+        return new InflaterInputStream(in, new Inflater(!zlib));
+    }
+
+    /**
+     * Sends a HEAD request so DNS, TCP and TLS setup for the host are done ahead of time. The
+     * connection goes back to the keep-alive pool and the TLS session is cached for reuse.
+     */
+    public static void warmUp(String url) {
+        try {
+            HttpURLConnection conn = openIdentity(url);
+            conn.setRequestMethod("HEAD");
+            conn.getResponseCode();
+            try (InputStream in = conn.getInputStream()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException ignored) {
+                // Error responses still warmed the connection
+            }
+        } catch (Exception e) {
+            // Only an optimisation; the download reports real problems
+        }
+    }
+
+    public static InputStream openStream(String url) throws IOException {
+        URL parsed = new URL(url);
+        if (!"http".equalsIgnoreCase(parsed.getProtocol()) && !"https".equalsIgnoreCase(parsed.getProtocol())) {
+            return parsed.openStream(); // file: and other local URLs have no content negotiation
+        }
+        return body(open(url));
+    }
+
+    // Brotli is optional: used only if org.brotli:dec is present at runtime
+    private static Constructor<?> findBrotli() {
+        try {
+            return Class.forName("org.brotli.dec.BrotliInputStream").getConstructor(InputStream.class);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
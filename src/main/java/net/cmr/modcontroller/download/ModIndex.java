@@ -0,0 +1,257 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Mod IDs declared by each jar in the game directory, read from META-INF/neoforge.mods.toml
+ * (or the older META-INF/mods.toml). Entries are kept in modcontroller/mod-index.json with the
+ * jar's size, mtime and fast checksum, so an unchanged jar is never opened again. Used to find
+ * older versions of a mod by what it declares rather than by its filename. The mod IDs of
+ * installed Modrinth projects are kept too, so dependency resolution can tell that a project's
+ * mod is already provided by some other jar before downloading it.
+ */
+public class ModIndex {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String INDEX_FILE = "modcontroller/mod-index.json";
+    private static final List<String> METADATA = List.of("META-INF/neoforge.mods.toml", "META-INF/mods.toml");
+    private static final Pattern MOD_ID = Pattern.compile("^\\s*modId\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private static final class Jar {
+        long size;
+        long mtime;
+        String fast;
+        List<String> modIds = new ArrayList<>();
+    }
+
+    private static final class State {
+        Map<String, Jar> jars = new HashMap<>();
+        Map<String, List<String>> projects = new HashMap<>(); // Modrinth project ID -> mod IDs
+    }
+
+    private final Path gameDir;
+    private final Map<String, Jar> jars;
+    private final Map<String, List<String>> projects;
+    private boolean dirty;
+
+    private ModIndex(Path gameDir, State state) {
+        this.gameDir = gameDir.toAbsolutePath().normalize();
+        this.jars = state.jars;
+        this.projects = state.projects;
+    }
+
+    public static ModIndex load(Path gameDir) {
+        Path file = gameDir.resolve(INDEX_FILE);
+        State state = new State();
+        if (Files.exists(file)) {
+            try {
+                State read = GSON.fromJson(Files.readString(file), State.class);
+                if (read != null && read.jars != null) state.jars.putAll(read.jars);
+                if (read != null && read.projects != null) state.projects.putAll(read.projects);
+            } catch (Exception e) {
+                System.err.println("ModController: Ignoring unreadable mod index: " + e.getMessage());
+            }
+        }
+        return new ModIndex(gameDir, state);
+    }
+
+    /**
+     * Mod IDs the jar declares, empty for libraries and non-NeoForge jars.
+     */
+    public List<String> modIds(Path jar) throws IOException {
+        String key = key(jar);
+        long size = Files.size(jar);
+        long mtime = Files.getLastModifiedTime(jar).toMillis();
+        // Entries are shared between threads, so what is needed is copied out under the lock
+        String knownFast = null;
+        List<String> knownIds = null;
+        synchronized (this) {
+            Jar known = jars.get(key);
+            if (known != null && known.size == size) {
+                if (known.mtime == mtime) return known.modIds;
+                knownFast = known.fast;
+                knownIds = known.modIds;
+            }
+        }
+        // Copied or touched: the checksum tells whether the content is still the indexed one
+        if (knownFast != null && knownFast.equals(Fingerprints.fastHash(jar))) {
+            synchronized (this) {
+                Jar known = jars.get(key);
+                if (known != null && known.size == size && knownFast.equals(known.fast)) {
+                    known.mtime = mtime;
+                    dirty = true;
+                }
+            }
+            return knownIds;
+        }
+
+        Jar indexed = new Jar();
+        indexed.size = size;
+        indexed.mtime = mtime;
+        indexed.fast = Fingerprints.fastHash(jar);
+        indexed.modIds = readModIds(jar);
+        synchronized (this) {
+            jars.put(key, indexed);
+            dirty = true;
+        }
+        return indexed.modIds;
+    }
+
+    /**
+     * Other jars in the same folder that declare any of this jar's mod IDs. A jar without mod
+     * metadata is matched against others without metadata by its filename instead.
+     */
+    List<Path> otherVersions(Path jar) throws IOException {
+        Path target = jar.toAbsolutePath().normalize();
+        List<String> ids = modIds(target);
+        String baseKey = ids.isEmpty() ? FileDownloader.computeJarBaseKey(target.getFileName().toString()) : null;
+
+        List<Path> others = new ArrayList<>();
+        try (var stream = Files.list(target.getParent())) {
+            for (Path candidate : (Iterable<Path>) stream::iterator) {
+                String name = candidate.getFileName().toString();
+                if (!name.endsWith(".jar") || candidate.toAbsolutePath().normalize().equals(target)) continue;
+                List<String> candidateIds;
+                try {
+                    candidateIds = modIds(candidate);
+                } catch (IOException e) {
+                    continue; // Vanished or unreadable; not ours to delete
+                }
+                boolean same = ids.isEmpty()
+                    ? candidateIds.isEmpty() && FileDownloader.computeJarBaseKey(name).equalsIgnoreCase(baseKey)
+                    : !Collections.disjoint(ids, candidateIds);
+                if (same) others.add(candidate);
+            }
+        }
+        return others;
+    }
+
+    synchronized void recordProject(String projectId, List<String> modIds) {
+        if (modIds.isEmpty() || modIds.equals(projects.get(projectId))) return;
+        projects.put(projectId, new ArrayList<>(modIds));
+        dirty = true;
+    }
+
+    /**
+     * Mod IDs the project's jar declared when it was last installed, or null if it never was.
+     */
+    synchronized List<String> projectModIds(String projectId) {
+        return projects.get(projectId);
+    }
+
+    /**
+     * A jar in the folder, other than {@code except}, that declares any of the mod IDs, or null.
+     */
+    Path providerOf(List<String> ids, Path dir, Path except) {
+        if (!Files.isDirectory(dir)) return null;
+        Path skip = except.toAbsolutePath().normalize();
+        try (var stream = Files.list(dir)) {
+            for (Path jar : (Iterable<Path>) stream.filter(p -> p.toString().endsWith(".jar"))::iterator) {
+                if (jar.toAbsolutePath().normalize().equals(skip)) continue;
+                try {
+                    if (!Collections.disjoint(ids, modIds(jar))) return jar;
+                } catch (IOException e) {
+                    // Vanished or unreadable; provides nothing
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("ModController: Could not list " + dir + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Mod IDs declared by any jar in the folder.
+     */
+    Set<String> modIdsIn(Path dir) {
+        Set<String> ids = new HashSet<>();
+        if (!Files.isDirectory(dir)) return ids;
+        try (var stream = Files.list(dir)) {
+            for (Path jar : (Iterable<Path>) stream.filter(p -> p.toString().endsWith(".jar"))::iterator) {
+                try {
+                    ids.addAll(modIds(jar));
+                } catch (IOException e) {
+                    // Vanished or unreadable; provides nothing
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("ModController: Could not list " + dir + ": " + e.getMessage());
+        }
+        return ids;
+    }
+
+    public synchronized void save() {
+        dirty |= jars.keySet().removeIf(key -> !Files.isRegularFile(gameDir.resolve(key)));
+        if (!dirty) return;
+        Path file = gameDir.resolve(INDEX_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            State state = new State();
+            state.jars = jars;
+            state.projects = projects;
+            Files.writeString(temp, GSON.toJson(state));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to save mod index: " + e.getMessage());
+        }
+    }
+
+    static List<String> readModIds(Path jar) {
+        List<String> ids = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            for (String name : METADATA) {
+                ZipEntry entry = zip.getEntry(name);
+                if (entry == null) continue;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8))) {
+                    // Only [[mods]] tables declare mods; [[dependencies.x]] tables name other mods' IDs
+                    String table = "";
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String trimmed = line.trim();
+                        if (trimmed.startsWith("[")) {
+                            table = trimmed.replaceAll("\\s", "");
+                            int comment = table.indexOf('#');
+                            if (comment >= 0) table = table.substring(0, comment);
+                            continue;
+                        }
+                        Matcher matcher = MOD_ID.matcher(line);
+                        if (table.equals("[[mods]]") && matcher.find() && !ids.contains(matcher.group(1))) {
+                            ids.add(matcher.group(1));
+                        }
+                    }
+                }
+                break;
+            }
+        } catch (IOException e) {
+            // Not a readable jar; treated as having no mod metadata
+        }
+        return ids;
+    }
+
+    private String key(Path jar) {
+        Path absolute = jar.toAbsolutePath().normalize();
+        Path relative = absolute.startsWith(gameDir) ? gameDir.relativize(absolute) : absolute;
+        return relative.toString().replace('\\', '/');
+    }
+}
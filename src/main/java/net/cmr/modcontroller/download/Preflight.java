@@ -0,0 +1,239 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.DownloadEntry;
+import net.cmr.modcontroller.config.PreflightConfig;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks a run before anything on disk is touched: every entry is resolved, the bytes still to
+ * transfer are summed per filesystem and compared with free space, and every host that will be
+ * contacted is probed. Resolution, size lookups and probes all run in parallel. A host that
+ * does not answer only causes a warning, since the probe can be wrong where the download would
+ * work (a firewall that only lets the proxy out, for example).
+ */
+class Preflight {
+    private static final int THREADS = 8;
+
+    static final class Report {
+        final List<String> problems = new ArrayList<>();
+        final List<String> diskProblems = new ArrayList<>(); // Also in problems; these affect the whole run
+        final List<DownloadEntry> failedEntries = new ArrayList<>();
+        final List<String> warnings = new ArrayList<>(); // Unreachable sources; those entries still run
+        int transfers;
+        int current;
+        long bytes;
+    }
+
+    private final FileDownloader downloader;
+    private final SizeHistory sizeHistory;
+    private final PreflightConfig config;
+
+    Preflight(FileDownloader downloader, SizeHistory sizeHistory, PreflightConfig config) {
+        this.downloader = downloader;
+        this.sizeHistory = sizeHistory;
+        this.config = config;
+    }
+
+    Report run(List<DownloadEntry> entries, Path gameDir) throws InterruptedException {
+        Report report = new Report();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "ModController-Preflight");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // 1. Resolve entries and work out what still has to be transferred
+            Map<DownloadEntry, Future<Planned>> planned = new LinkedHashMap<>();
+            for (DownloadEntry entry : entries) {
+                planned.put(entry, pool.submit(() -> plan(entry, gameDir)));
+            }
+            List<Planned> transfers = new ArrayList<>();
+            for (Map.Entry<DownloadEntry, Future<Planned>> result : planned.entrySet()) {
+                try {
+                    Planned plan = result.getValue().get();
+                    if (plan == null) {
+                        report.current++;
+                    } else {
+                        transfers.add(plan);
+                    }
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    report.problems.add("Cannot resolve " + result.getKey().name + ": " + cause.getMessage());
+                    report.failedEntries.add(result.getKey());
+                }
+            }
+            report.transfers = transfers.size();
+
+            // 2. Probe every host the transfers need
+            Map<String, Future<Boolean>> probes = new LinkedHashMap<>();
+            for (Planned plan : transfers) {
+                for (String url : plan.urls) {
+                    String host = hostKey(url);
+                    if (host != null && !probes.containsKey(host)) {
+                        probes.put(host, pool.submit(() -> reachable(host)));
+                    }
+                }
+            }
+
+            // 3. Sum bytes per filesystem while the probes run
+            Map<FileStore, Long> needed = new LinkedHashMap<>();
+            Map<FileStore, Path> storeExamples = new LinkedHashMap<>();
+            for (Planned plan : transfers) {
+                report.bytes += plan.bytes;
+                try {
+                    FileStore store = Files.getFileStore(existingAncestor(plan.target));
+                    needed.merge(store, plan.bytes, Long::sum);
+                    storeExamples.putIfAbsent(store, plan.target);
+                } catch (IOException e) {
+                    report.diskProblems.add("Cannot inspect filesystem for " + plan.target + ": " + e.getMessage());
+                }
+            }
+            long reserve = Math.max(0, config.reserveMb) * 1024 * 1024;
+            for (Map.Entry<FileStore, Long> store : needed.entrySet()) {
+                try {
+                    long free = store.getKey().getUsableSpace();
+                    System.out.println("ModController: Preflight: " + mb(store.getValue()) + " needed, " + mb(free) +
+                                       " free on " + store.getKey().name() + " (" + storeExamples.get(store.getKey()).getParent() + ")");
+                    if (free < store.getValue() + reserve) {
+                        report.diskProblems.add("Not enough disk space for " + storeExamples.get(store.getKey()).getParent() +
+                                            ": need " + mb(store.getValue() + reserve) + ", " + mb(free) + " free");
+                    }
+                } catch (IOException e) {
+                    report.diskProblems.add("Cannot read free space: " + e.getMessage());
+                }
+            }
+            report.problems.addAll(report.diskProblems);
+
+            // 4. An entry fails preflight only if none of its sources is reachable
+            Map<String, Boolean> hostUp = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Boolean>> probe : probes.entrySet()) {
+                boolean up;
+                try {
+                    up = probe.getValue().get();
+                } catch (Exception e) {
+                    up = false;
+                }
+                hostUp.put(probe.getKey(), up);
+            }
+            for (Planned plan : transfers) {
+                boolean anyUp = false;
+                for (String url : plan.urls) {
+                    String host = hostKey(url);
+                    if (host == null || hostUp.getOrDefault(host, false)) {
+                        anyUp = true;
+                        break;
+                    }
+                }
+                if (anyUp) continue;
+                String problem = "No reachable source for " + plan.entry.name + " (" + plan.urls.get(0) + ")";
+                if (config.abortOnUnavailableEntries) {
+                    report.problems.add(problem);
+                    report.failedEntries.add(plan.entry);
+                } else {
+                    report.warnings.add(problem + ", trying anyway");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("ModController: Preflight: " + report.transfers + " transfer(s), " + mb(report.bytes) +
+                           ", " + report.current + " already up to date");
+        for (String problem : report.problems) {
+            System.err.println("  PREFLIGHT: " + problem);
+        }
+        for (String warning : report.warnings) {
+            System.err.println("  PREFLIGHT WARNING: " + warning);
+        }
+        return report;
+    }
+
+    // Null when the entry is already current
+    private Planned plan(DownloadEntry entry, Path gameDir) throws Exception {
+        FileDownloader.Resolved resolved = downloader.resolve(entry);
+        if (downloader.isCurrent(entry, resolved, gameDir)) return null;
+
+        long bytes = resolved.size > 0 ? resolved.size : sizeHistory.get(entry);
+        if (bytes <= 0) bytes = DownloadScheduler.headSize(resolved.url);
+        sizeHistory.record(entry, bytes);
+
+        Planned plan = new Planned();
+        plan.entry = entry;
+        plan.bytes = Math.max(bytes, 0);
+        plan.target = entry.extract ? gameDir.resolve(entry.destination) : downloader.destinationFor(entry, resolved, gameDir);
+        plan.urls.add(resolved.url);
+        if (entry.mirrors != null) plan.urls.addAll(entry.mirrors);
+        return plan;
+    }
+
+    // "scheme://host:port" for network URLs, null for local ones that need no probe
+    private static String hostKey(String url) {
+        try {
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : "";
+            if (!scheme.equals("http") && !scheme.equals("https")) return null;
+            int port = uri.getPort() > 0 ? uri.getPort() : (scheme.equals("https") ? 443 : 80);
+            return scheme + "://" + uri.getHost() + ":" + port;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean reachable(String hostKey) {
+        URI uri = URI.create(hostKey);
+        // Downloads go through the proxy, so a direct connection says nothing about them
+        if (viaProxy(uri)) return true;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()), config.probeTimeoutMs);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean viaProxy(URI uri) {
+        ProxySelector selector = ProxySelector.getDefault();
+        if (selector == null) return false;
+        try {
+            for (Proxy proxy : selector.select(uri)) {
+                if (proxy.type() != Proxy.Type.DIRECT) return true;
+            }
+        } catch (IllegalArgumentException e) {
+            // Not a URI the selector understands; probe directly
+        }
+        return false;
+    }
+
+    private static Path existingAncestor(Path path) {
+        Path current = path.toAbsolutePath();
+        while (current != null && !Files.exists(current)) current = current.getParent();
+        return current != null ? current : path.toAbsolutePath().getRoot();
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static final class Planned {
+        DownloadEntry entry;
+        Path target;
+        long bytes;
+        final List<String> urls = new ArrayList<>();
+    }
+}
@@ -13,6 +13,10 @@ public class ProgressTracker {
     private static volatile long currentFileBytes = 0;
     private static volatile long currentFileTotal = 0;
     private static volatile boolean isActive = false;
+    private static volatile boolean deferredActive = false;
+    private static volatile int deferredDone = 0;
+    private static volatile int deferredTotal = 0;
+    private static volatile String deferredCurrent = "";
 
     public static void startDownload(int total) {
         isActive = true;
@@ -40,6 +44,24 @@ public class ProgressTracker {
         subPhase = "";
     }
 
+    public static void startDeferred(int total) {
+        deferredActive = true;
+        deferredTotal = total;
+        deferredDone = 0;
+        deferredCurrent = "";
+    }
+
+    public static void updateDeferred(int done, String fileName) {
+        deferredDone = done;
+        deferredCurrent = fileName;
+    }
+
+    public static void finishDeferred() {
+        deferredActive = false;
+        deferredDone = deferredTotal;
+        deferredCurrent = "";
+    }
+
     // Getters
     public static boolean isActive() { return isActive; }
     public static String getMainPhase() { return mainPhase; }
@@ -49,6 +71,10 @@ public class ProgressTracker {
     public static float getMainProgress() { 
         return totalFiles > 0 ? (float) currentFile / totalFiles : 0;
     }
+    public static boolean isDeferredActive() { return deferredActive; }
+    public static int getDeferredDone() { return deferredDone; }
+    public static int getDeferredTotal() { return deferredTotal; }
+    public static String getDeferredCurrent() { return deferredCurrent; }
     public static float getFileProgress() {
         return currentFileTotal > 0 ? (float) currentFileBytes / currentFileTotal : 0;
     }
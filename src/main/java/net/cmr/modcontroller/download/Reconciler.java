@@ -0,0 +1,270 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import net.cmr.modcontroller.config.DownloadEntry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares the desired entries with what earlier runs installed, as recorded in
+ * modcontroller/installed.json, and plans the smallest set of actions. A pinned entry (fixed
+ * version, file ID or hash) whose spec and file are unchanged needs nothing, not even a lookup.
+ * Files recorded for entries that are no longer configured are orphans and get removed.
+ */
+public class Reconciler {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String STATE_FILE = "modcontroller/installed.json";
+
+    public enum Action { DOWNLOAD, REPLACE, CHECK, REMOVE, NOOP }
+
+    public static final class Step {
+        public final Action action;
+        public final String name;
+        public final String path; // Recorded file for known entries, configured destination otherwise
+        public final String reason;
+        final transient DownloadEntry entry; // Null for REMOVE
+        final transient String id;
+
+        Step(Action action, String id, String name, String path, String reason, DownloadEntry entry) {
+            this.action = action;
+            this.id = id;
+            this.name = name;
+            this.path = path;
+            this.reason = reason;
+            this.entry = entry;
+        }
+    }
+
+    public static final class Plan {
+        public final List<Step> steps = new ArrayList<>();
+        public boolean removalsHeld; // Some desired entries may be missing, so nothing was planned for removal
+
+        /** Entries that need a run: everything except no-ops and removals. */
+        public List<DownloadEntry> toRun() {
+            List<DownloadEntry> entries = new ArrayList<>();
+            for (Step step : steps) {
+                if (step.entry != null && step.action != Action.NOOP) entries.add(step.entry);
+            }
+            return entries;
+        }
+
+        public int count(Action action) {
+            return (int) steps.stream().filter(s -> s.action == action).count();
+        }
+
+        public void print() {
+            System.out.println("ModController: Plan: " + count(Action.DOWNLOAD) + " download, " + count(Action.REPLACE) +
+                               " replace, " + count(Action.CHECK) + " check, " + count(Action.REMOVE) + " remove, " +
+                               count(Action.NOOP) + " unchanged");
+            if (removalsHeld) System.out.println("  (orphaned files are kept: a pack failed to import)");
+            for (Step step : steps) {
+                if (step.action == Action.NOOP) continue;
+                System.out.println("  " + step.action.name().toLowerCase() + " " + step.name + " (" + step.reason + ")");
+            }
+        }
+    }
+
+    private static final class Installed {
+        String name;
+        String spec;
+        String path; // Relative to the game directory; the extraction marker for archives
+        long size;
+        long mtime;
+        boolean pinned;
+    }
+
+    private final Path gameDir;
+    private final Map<String, Installed> installed;
+    private final Set<String> tracked = new HashSet<>(); // Identities of the last plan; others are not recorded
+    private boolean dirty;
+
+    private Reconciler(Path gameDir, Map<String, Installed> installed) {
+        this.gameDir = gameDir.toAbsolutePath().normalize();
+        this.installed = installed;
+    }
+
+    public static Reconciler load(Path gameDir) {
+        Path file = gameDir.resolve(STATE_FILE);
+        Map<String, Installed> installed = new LinkedHashMap<>();
+        if (Files.exists(file)) {
+            try {
+                Map<String, Installed> read = GSON.fromJson(Files.readString(file),
+                    new TypeToken<Map<String, Installed>>() {}.getType());
+                if (read != null) installed.putAll(read);
+            } catch (Exception e) {
+                System.err.println("ModController: Ignoring unreadable install state: " + e.getMessage());
+            }
+        }
+        return new Reconciler(gameDir, installed);
+    }
+
+    public synchronized Plan plan(List<DownloadEntry> desired) {
+        return plan(desired, false);
+    }
+
+    /**
+     * With {@code holdRemovals} nothing is planned for removal and all records are kept. Used
+     * when the desired list is known to be incomplete, e.g. because a pack failed to import.
+     */
+    public synchronized Plan plan(List<DownloadEntry> desired, boolean holdRemovals) {
+        Plan plan = new Plan();
+        plan.removalsHeld = holdRemovals;
+        Set<String> wanted = new HashSet<>();
+        for (DownloadEntry entry : desired) {
+            String id = id(entry);
+            wanted.add(id);
+            tracked.add(id);
+            Installed known = installed.get(id);
+            if (known == null) {
+                plan.steps.add(new Step(Action.DOWNLOAD, id, entry.name, entry.destination, "no install record", entry));
+            } else if (!known.spec.equals(spec(entry))) {
+                plan.steps.add(new Step(Action.REPLACE, id, entry.name, known.path, "entry changed", entry));
+            } else if (!unchanged(known)) {
+                plan.steps.add(new Step(Action.CHECK, id, entry.name, known.path, "file missing or modified", entry));
+            } else if (!known.pinned) {
+                plan.steps.add(new Step(Action.CHECK, id, entry.name, known.path, "not pinned to a version or hash", entry));
+            } else {
+                plan.steps.add(new Step(Action.NOOP, id, entry.name, known.path, "up to date", entry));
+            }
+        }
+        for (Map.Entry<String, Installed> known : installed.entrySet()) {
+            if (holdRemovals || wanted.contains(known.getKey())) continue;
+            plan.steps.add(new Step(Action.REMOVE, known.getKey(), known.getValue().name, known.getValue().path,
+                                    "no longer configured", null));
+        }
+        return plan;
+    }
+
+    /**
+     * Files of entries that need no action, so callers can count them as in place.
+     */
+    public List<Path> unchangedFiles(Plan plan) {
+        List<Path> files = new ArrayList<>();
+        for (Step step : plan.steps) {
+            if (step.action == Action.NOOP) files.add(gameDir.resolve(step.path));
+        }
+        return files;
+    }
+
+    /**
+     * Records what an entry placed. Entries that were not part of a plan, like added dependencies,
+     * are not recorded, since they would look like orphans once they are no longer missing.
+     */
+    synchronized void record(DownloadEntry entry, Path placed) {
+        if (!tracked.contains(id(entry))) return;
+        try {
+            Installed record = new Installed();
+            record.name = entry.name;
+            record.spec = spec(entry);
+            record.path = relative(placed);
+            record.size = Files.size(placed);
+            record.mtime = Files.getLastModifiedTime(placed).toMillis();
+            record.pinned = pinned(entry);
+            installed.put(id(entry), record);
+            dirty = true;
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to record " + entry.name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets the entries of REMOVE steps and, if deleteFiles is set, removes their files when
+     * they are still exactly as installed and not used by a wanted entry. Changed files are left
+     * alone. Returns the number of files removed.
+     */
+    synchronized int removeOrphans(Plan plan, Collection<Path> keep, FileDownloader downloader, boolean deleteFiles) {
+        Set<Path> protectedFiles = new HashSet<>();
+        for (Path file : keep) protectedFiles.add(file.toAbsolutePath().normalize());
+        for (Step step : plan.steps) {
+            Installed known = step.entry != null ? installed.get(step.id) : null;
+            if (known != null) protectedFiles.add(gameDir.resolve(known.path).normalize());
+        }
+
+        int removed = 0;
+        for (Step step : plan.steps) {
+            if (step.action != Action.REMOVE) continue;
+            Installed known = installed.remove(step.id);
+            dirty = true;
+            if (known == null || !deleteFiles) continue;
+            Path file = gameDir.resolve(known.path).normalize();
+            if (!file.startsWith(gameDir) || protectedFiles.contains(file) || !Files.isRegularFile(file)) continue;
+            if (!unchanged(known)) {
+                System.out.println("ModController: Leaving " + known.path + " in place, it was modified after install");
+                continue;
+            }
+            boolean marker = known.path.startsWith("modcontroller/");
+            try {
+                if (marker) Files.deleteIfExists(file);
+                else downloader.removeOrphan(file);
+                removed++;
+                System.out.println("ModController: Removed orphaned " + (marker
+                    ? "archive record for " + known.name + " (extracted files are left in place)"
+                    : "file " + known.path));
+            } catch (IOException e) {
+                System.err.println("ModController: Failed to remove " + known.path + ": " + e.getMessage());
+            }
+        }
+        return removed;
+    }
+
+    public synchronized void save() {
+        if (!dirty) return;
+        Path file = gameDir.resolve(STATE_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(installed));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to save install state: " + e.getMessage());
+        }
+    }
+
+    private boolean unchanged(Installed known) {
+        try {
+            Path file = gameDir.resolve(known.path);
+            return Files.isRegularFile(file) && Files.size(file) == known.size &&
+                   Files.getLastModifiedTime(file).toMillis() == known.mtime;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Same identity as the archive markers: an entry keeps it across version bumps
+    private static String id(DownloadEntry entry) {
+        return entry.name + "|" + entry.destination;
+    }
+
+    // Everything that decides which file ends up installed; ordering and transfer options are left out
+    private static String spec(DownloadEntry entry) {
+        return String.join("|", String.valueOf(entry.sourceType), String.valueOf(entry.url), String.valueOf(entry.projectId),
+            String.valueOf(entry.versionId), String.valueOf(entry.fileId), String.valueOf(entry.destination),
+            String.valueOf(entry.sha1Hash), String.valueOf(entry.sha512Hash), String.valueOf(entry.extract),
+            String.valueOf(entry.archiveFormat), String.valueOf(entry.stripComponents),
+            String.valueOf(entry.versionTag), String.valueOf(entry.replaceIfExists));
+    }
+
+    private static boolean pinned(DownloadEntry entry) {
+        return entry.sourceType == DownloadEntry.SourceType.MODRINTH || entry.sourceType == DownloadEntry.SourceType.CURSEFORGE ||
+               entry.sha1Hash != null || entry.sha512Hash != null;
+    }
+
+    private String relative(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path relative = absolute.startsWith(gameDir) ? gameDir.relativize(absolute) : absolute;
+        return relative.toString().replace('\\', '/');
+    }
+}
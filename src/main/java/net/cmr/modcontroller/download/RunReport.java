@@ -0,0 +1,114 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects phase timings and per-entry metrics for one launch and writes them to
+ * modcontroller/run-report.json. Each phase and entry is also emitted as a JFR event.
+ */
+public class RunReport {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String REPORT_FILE = "modcontroller/run-report.json";
+    private static volatile boolean jfrAvailable = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    /**
+     * A running phase; call {@link #end()} when it is over.
+     */
+    public final class Phase {
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final Object event;
+
+        private Phase(String name) {
+            this.name = name;
+            this.event = jfr(() -> DownloadEvents.beginPhase(name));
+        }
+
+        public void end() {
+            long ms = EntryMetrics.millisSince(startNanos);
+            synchronized (RunReport.this) {
+                phases.merge(name, ms, Long::sum);
+            }
+            if (event != null) jfr(() -> { DownloadEvents.end(event); return null; });
+        }
+    }
+
+    // Serialized as the report body
+    private final String started = Instant.now().toString();
+    private final Map<String, Long> phases = new LinkedHashMap<>(); // name -> ms
+    private final List<EntryMetrics> entries = new ArrayList<>();
+    private Map<String, HostStats> hosts;
+    private long totalBytes;
+    private int cacheHits;
+
+    public Phase startPhase(String name) {
+        return new Phase(name);
+    }
+
+    Object beginEntry() {
+        return jfr(DownloadEvents::beginEntry);
+    }
+
+    synchronized void endEntry(Object event, EntryMetrics metrics) {
+        entries.add(metrics);
+        if (event != null) jfr(() -> { DownloadEvents.endEntry(event, metrics); return null; });
+    }
+
+    synchronized void write(Path gameDir) {
+        hosts = new LinkedHashMap<>();
+        totalBytes = 0;
+        cacheHits = 0;
+        for (EntryMetrics entry : entries) {
+            totalBytes += entry.bytes;
+            cacheHits += entry.cacheHits.size();
+            if (entry.host == null) continue;
+            HostStats host = hosts.computeIfAbsent(entry.host, h -> new HostStats());
+            host.entries++;
+            host.bytes += entry.bytes;
+            host.transferMs += entry.transferMs;
+            host.retries += entry.retries;
+            if ("FAILED".equals(entry.result)) host.failures++;
+            host.kbPerSecond = host.transferMs > 0 ? host.bytes / 1.024 / host.transferMs : 0;
+        }
+
+        Path file = gameDir.resolve(REPORT_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(this));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            System.err.println("ModController: Failed to write run report: " + e.getMessage());
+        }
+    }
+
+    // Runs a JFR call, turning JFR off for the process if the module cannot be linked
+    private static Object jfr(java.util.function.Supplier<Object> call) {
+        if (!jfrAvailable) return null;
+        try {
+            return call.get();
+        } catch (LinkageError e) {
+            jfrAvailable = false;
+            return null;
+        }
+    }
+
+    private static final class HostStats {
+        int entries;
+        long bytes;
+        long transferMs;
+        double kbPerSecond;
+        int retries;
+        int failures;
+    }
+}
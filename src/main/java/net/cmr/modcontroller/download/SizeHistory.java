@@ -0,0 +1,83 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import net.cmr.modcontroller.config.DownloadEntry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sizes of files seen in earlier runs, keyed by entry source and destination. Lets the
+ * scheduler order Modrinth/CurseForge entries before their metadata has been fetched.
+ */
+public class SizeHistory {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String HISTORY_FILE = "modcontroller/entry-sizes.json";
+
+    private final Path gameDir;
+    private final Map<String, Long> sizes;
+    private boolean dirty;
+
+    private SizeHistory(Path gameDir, Map<String, Long> sizes) {
+        this.gameDir = gameDir;
+        this.sizes = sizes;
+    }
+
+    public static SizeHistory load(Path gameDir) {
+        Path file = gameDir.resolve(HISTORY_FILE);
+        Map<String, Long> sizes = new HashMap<>();
+        if (Files.exists(file)) {
+            try {
+                Map<String, Long> read = GSON.fromJson(Files.readString(file),
+                    new TypeToken<Map<String, Long>>() {}.getType());
+                if (read != null) sizes.putAll(read);
+            } catch (Exception e) {
+                System.err.println("ModController: Ignoring unreadable size history: " + e.getMessage());
+            }
+        }
+        return new SizeHistory(gameDir, sizes);
+    }
+
+    static String key(DownloadEntry entry) {
+        String source = switch (entry.sourceType) {
+            case URL -> entry.url;
+            case MODRINTH -> entry.versionId;
+            case CURSEFORGE -> entry.projectId + "/" + entry.fileId;
+        };
+        return entry.sourceType.name().toLowerCase() + ":" + source + "|" + entry.destination;
+    }
+
+    /**
+     * Last recorded size for the entry, or 0 if unknown.
+     */
+    public synchronized long get(DownloadEntry entry) {
+        Long size = sizes.get(key(entry));
+        return size != null ? size : 0;
+    }
+
+    public synchronized void record(DownloadEntry entry, long size) {
+        if (size <= 0) return;
+        Long previous = sizes.put(key(entry), size);
+        if (previous == null || previous != size) dirty = true;
+    }
+
+    public synchronized void save() {
+        if (!dirty) return;
+        Path file = gameDir.resolve(HISTORY_FILE);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(sizes));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("ModController: Failed to save size history: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.cmr.modcontroller.download;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import net.cmr.modcontroller.config.ModConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result of the last complete, successful run: a fingerprint of the effective config, when the
+ * remote state was last checked, and the size and mtime of every file the run placed. While the
+ * config is unchanged, the check is younger than the TTL and the files are untouched, a launch
+ * can skip the update check without any network access.
+ */
+class UpdateState {
+    private static final Gson GSON = new Gson();
+    private static final String STATE_FILE = "modcontroller/update-state.json";
+
+    private String fingerprint;
+    @SerializedName("checked_at")
+    private long checkedAt;
+    private Map<String, long[]> files = new LinkedHashMap<>(); // relative path -> {size, mtime}
+
+    static String fingerprint(ModConfig config) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(GSON.toJson(config).getBytes(StandardCharsets.UTF_8));
+            // Pack entries are transient in the config, so they are added separately
+            digest.update(GSON.toJson(config.packDownloads).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * Returns the age in minutes of a matching, untouched state, or -1 if a check is needed.
+     */
+    static long freshAgeMinutes(Path gameDir, String fingerprint, long ttlMinutes) {
+        if (ttlMinutes <= 0) return -1;
+        Path file = gameDir.resolve(STATE_FILE);
+        try {
+            if (!Files.exists(file)) return -1;
+            UpdateState state = GSON.fromJson(Files.readString(file), UpdateState.class);
+            if (state == null || !fingerprint.equals(state.fingerprint)) return -1;
+            long ageMinutes = (System.currentTimeMillis() - state.checkedAt) / 60000;
+            if (ageMinutes < 0 || ageMinutes >= ttlMinutes) return -1;
+            for (Map.Entry<String, long[]> stamp : state.files.entrySet()) {
+                Path placed = gameDir.resolve(stamp.getKey());
+                if (!Files.isRegularFile(placed) || Files.size(placed) != stamp.getValue()[0] ||
+                    Files.getLastModifiedTime(placed).toMillis() != stamp.getValue()[1]) {
+                    System.out.println("ModController: " + stamp.getKey() + " changed since the last check");
+                    return -1;
+                }
+            }
+            return ageMinutes;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    static void record(Path gameDir, String fingerprint, Collection<Path> placedFiles) {
+        UpdateState state = new UpdateState();
+        state.fingerprint = fingerprint;
+        state.checkedAt = System.currentTimeMillis();
+        Path root = gameDir.toAbsolutePath().normalize();
+        try {
+            for (Path placed : placedFiles) {
+                Path absolute = placed.toAbsolutePath().normalize();
+                if (!Files.isRegularFile(absolute)) {
+                    clear(gameDir); // Moved away during the run, so nothing can be trusted
+                    return;
+                }
+                state.files.put(root.relativize(absolute).toString().replace('\\', '/'),
+                    new long[] {Files.size(absolute), Files.getLastModifiedTime(absolute).toMillis()});
+            }
+            Path file = gameDir.resolve(STATE_FILE);
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(state));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            System.err.println("ModController: Failed to save update state: " + e.getMessage());
+        }
+    }
+
+    static void clear(Path gameDir) {
+        try {
+            Files.deleteIfExists(gameDir.resolve(STATE_FILE));
+        } catch (Exception ignored) {}
+    }
+}
@@ -0,0 +1,133 @@
+package net.cmr.modcontroller.download;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Structural check for .jar and .zip files: finds the end-of-central-directory record (ZIP64
+ * included), walks the central directory and checks it lines up with the local headers. Nothing
+ * is inflated, so it costs a few small reads per file. Catches truncated transfers and error
+ * pages saved under a jar name, which would otherwise only fail during mod discovery.
+ */
+final class ZipCheck {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIZE = 46;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private ZipCheck() {}
+
+    static boolean applies(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".jar") || name.endsWith(".zip");
+    }
+
+    /**
+     * Throws if a file whose name marks it as an archive is not structurally valid.
+     */
+    static void verify(Path file, String fileName) throws IOException {
+        if (!applies(fileName)) return;
+        String problem = problem(file);
+        if (problem != null) throw new IOException(fileName + " is not a valid archive: " + problem);
+    }
+
+    /**
+     * Describes what is wrong with the archive, or returns null if it looks intact.
+     */
+    static String problem(Path file) {
+        // Positional reads rather than a mapping: a mapped file cannot be moved or deleted on Windows until unmapped
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < EOCD_SIZE) return "only " + size + " bytes";
+
+            int tailLength = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT);
+            ByteBuffer tail = read(channel, size - tailLength, tailLength);
+            int eocd = -1;
+            for (int i = tailLength - EOCD_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIG) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                return looksLikeText(read(channel, 0, (int) Math.min(size, 64)))
+                    ? "looks like a text or HTML page" : "no end of central directory (truncated?)";
+            }
+
+            long eocdPosition = size - tailLength + eocd;
+            long entries = tail.getShort(eocd + 10) & 0xFFFF;
+            long cdSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long cdOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+            long cdLimit = eocdPosition;
+            if (entries == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+                if (eocdPosition < 20) return "missing ZIP64 locator";
+                ByteBuffer locator = read(channel, eocdPosition - 20, 20);
+                if (locator.getInt(0) != ZIP64_LOCATOR_SIG) return "missing ZIP64 locator";
+                long zip64Offset = locator.getLong(8);
+                if (zip64Offset < 0 || zip64Offset + 56 > eocdPosition) return "bad ZIP64 record offset";
+                ByteBuffer zip64 = read(channel, zip64Offset, 56);
+                if (zip64.getInt(0) != ZIP64_EOCD_SIG) return "bad ZIP64 end record";
+                entries = zip64.getLong(32);
+                cdSize = zip64.getLong(40);
+                cdOffset = zip64.getLong(48);
+                cdLimit = zip64Offset;
+            }
+            if (cdOffset < 0 || cdSize < 0 || cdOffset + cdSize > cdLimit) {
+                return "central directory lies outside the file (truncated?)";
+            }
+            if (cdSize > Integer.MAX_VALUE) return null; // Too large to walk cheaply; the record itself checked out
+
+            ByteBuffer cd = read(channel, cdOffset, (int) cdSize);
+            long count = 0;
+            long firstLocal = Long.MAX_VALUE;
+            int position = 0;
+            while (position + CEN_SIZE <= cdSize) {
+                if (cd.getInt(position) != CEN_SIG) return "damaged central directory at entry " + count;
+                long localOffset = cd.getInt(position + 42) & 0xFFFFFFFFL;
+                if (localOffset != 0xFFFFFFFFL) { // Otherwise the offset is in the ZIP64 extra field
+                    if (localOffset + 30 > cdOffset) return "entry " + count + " points past the file data";
+                    firstLocal = Math.min(firstLocal, localOffset);
+                }
+                position += CEN_SIZE + (cd.getShort(position + 28) & 0xFFFF) +
+                            (cd.getShort(position + 30) & 0xFFFF) + (cd.getShort(position + 32) & 0xFFFF);
+                count++;
+            }
+            if (position > cdSize) return "central directory is cut short";
+            if (count != entries) return "central directory lists " + count + " of " + entries + " entries";
+            if (firstLocal != Long.MAX_VALUE && read(channel, firstLocal, 4).getInt(0) != LOC_SIG) {
+                return "no local header where the first entry should start";
+            }
+            return null;
+        } catch (EOFException e) {
+            return "truncated";
+        } catch (IOException e) {
+            return "unreadable: " + e.getMessage();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+        return buffer.flip();
+    }
+
+    private static boolean looksLikeText(ByteBuffer head) {
+        while (head.hasRemaining()) {
+            byte b = head.get();
+            if (b == '<' || b == '{') return true;
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != (byte) 0xEF && b != (byte) 0xBB && b != (byte) 0xBF) return false;
+        }
+        return false;
+    }
+}
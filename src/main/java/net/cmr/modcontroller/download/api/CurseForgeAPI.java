@@ -1,13 +1,10 @@
 package net.cmr.modcontroller.download.api;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import net.cmr.modcontroller.download.HttpTransport;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 
 public class CurseForgeAPI {
     private static final String API_BASE = "https://api.curseforge.com/v1";
@@ -21,39 +18,63 @@ public class CurseForgeAPI {
         String urlString = String.format("%s/mods/%s/files/%s", API_BASE, projectId, fileId);
         HttpURLConnection conn = createConnection(urlString);
 
-        try (InputStream in = conn.getInputStream()) {
-            String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
-            JsonObject json = JsonParser.parseString(response).getAsJsonObject();
-            JsonObject data = json.getAsJsonObject("data");
-
-            DownloadInfo info = new DownloadInfo();
-            info.url = data.get("downloadUrl").getAsString();
-            info.filename = data.get("fileName").getAsString();
-            info.size = data.get("fileLength").getAsLong();
-
-            if (data.has("hashes")) {
-                for (var hash : data.getAsJsonArray("hashes")) {
-                    JsonObject hashObj = hash.getAsJsonObject();
-                    int algo = hashObj.get("algo").getAsInt();
-                    String value = hashObj.get("value").getAsString();
-                    
-                    if (algo == 1) { // SHA1
-                        info.sha1 = value;
-                    }
+        try (JsonReader reader = JsonStreams.reader(HttpTransport.body(conn))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("data")) {
+                    return readFile(reader); // Nothing else in the response is needed
                 }
+                reader.skipValue();
             }
-
-            return info;
+            throw new IOException("CurseForge response has no file data");
         } finally {
             conn.disconnect();
         }
     }
 
+    private static DownloadInfo readFile(JsonReader reader) throws IOException {
+        DownloadInfo info = new DownloadInfo();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "downloadUrl" -> info.url = JsonStreams.nextStringOrNull(reader);
+                case "fileName" -> info.filename = reader.nextString();
+                case "fileLength" -> info.size = reader.nextLong();
+                case "hashes" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) readHash(reader, info);
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (info.url == null) {
+            throw new IOException("CurseForge file " + info.filename + " has no download URL (third-party downloads disabled)");
+        }
+        return info;
+    }
+
+    private static void readHash(JsonReader reader, DownloadInfo info) throws IOException {
+        int algo = 0;
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "algo" -> algo = reader.nextInt();
+                case "value" -> value = JsonStreams.nextStringOrNull(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (algo == 1) { // SHA1
+            info.sha1 = value;
+        }
+    }
+
     private HttpURLConnection createConnection(String urlString) throws IOException {
-        URL url = new URL(urlString);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        HttpURLConnection conn = HttpTransport.open(urlString);
         conn.setRequestMethod("GET");
-        conn.setRequestProperty("User-Agent", "ModController/1.0");
         conn.setRequestProperty("x-api-key", apiKey);
 
         int responseCode = conn.getResponseCode();
@@ -0,0 +1,38 @@
+package net.cmr.modcontroller.download.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for reading API responses with a streaming {@link JsonReader}: only the needed fields
+ * are materialised and the rest is skipped, so no response string or element tree is built.
+ */
+final class JsonStreams {
+    private JsonStreams() {}
+
+    static JsonReader reader(InputStream in) {
+        return new JsonReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 16 * 1024));
+    }
+
+    static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    static boolean nextBooleanOrFalse(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BOOLEAN) {
+            reader.skipValue();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+}
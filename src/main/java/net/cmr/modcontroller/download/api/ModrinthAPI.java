@@ -1,76 +1,245 @@
-
 package net.cmr.modcontroller.download.api;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import net.cmr.modcontroller.download.HttpTransport;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ModrinthAPI {
     private static final String API_BASE = "https://api.modrinth.com/v2";
+    private static final int BATCH_SIZE = 100; // Keeps ids=[...] URLs well under common length limits
     private final String apiKey;
+    // Versions are immutable, so anything fetched in a batch can serve later single lookups
+    private final Map<String, VersionInfo> versionCache = new ConcurrentHashMap<>();
 
     public ModrinthAPI(String apiKey) {
         this.apiKey = apiKey;
     }
 
     public DownloadInfo getVersionDownload(String versionId) throws IOException {
+        VersionInfo cached = versionCache.get(versionId);
+        if (cached != null) return cached.download;
+
         String urlString = API_BASE + "/version/" + versionId;
         HttpURLConnection conn = createConnection(urlString);
 
-        try (InputStream in = conn.getInputStream()) {
-            String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
-            JsonObject json = JsonParser.parseString(response).getAsJsonObject();
-
-            // Get primary file
-            JsonObject file = json.getAsJsonArray("files").get(0).getAsJsonObject();
-
-            DownloadInfo info = new DownloadInfo();
-            info.url = file.get("url").getAsString();
-            info.filename = file.get("filename").getAsString();
-            info.size = file.get("size").getAsLong();
-            
-            if (file.has("hashes")) {
-                JsonObject hashes = file.getAsJsonObject("hashes");
-                if (hashes.has("sha512")) {
-                    info.sha512 = hashes.get("sha512").getAsString();
-                }
-                if (hashes.has("sha1")) {
-                    info.sha1 = hashes.get("sha1").getAsString();
-                }
-            }
-
-            return info;
+        try (JsonReader reader = JsonStreams.reader(HttpTransport.body(conn))) {
+            VersionInfo version = readVersion(reader);
+            versionCache.put(version.id, version);
+            return version.download;
         } finally {
             conn.disconnect();
         }
     }
 
     public DownloadInfo getProjectLatestVersion(String projectId, String gameVersion, String loader) throws IOException {
-        String urlString = String.format("%s/project/%s/version?game_versions=[\"%s\"]&loaders=[\"%s\"]",
-                API_BASE, projectId, gameVersion, loader);
-        HttpURLConnection conn = createConnection(urlString);
+        return getLatestVersion(projectId, gameVersion, loader).download;
+    }
+
+    /**
+     * Newest version of a project for the given game version and loader (either may be blank).
+     */
+    public VersionInfo getLatestVersion(String projectId, String gameVersion, String loader) throws IOException {
+        StringBuilder urlString = new StringBuilder(API_BASE + "/project/" + projectId + "/version");
+        String separator = "?";
+        if (gameVersion != null && !gameVersion.isBlank()) {
+            urlString.append(separator).append("game_versions=").append(encode("[\"" + gameVersion + "\"]"));
+            separator = "&";
+        }
+        if (loader != null && !loader.isBlank()) {
+            urlString.append(separator).append("loaders=").append(encode("[\"" + loader + "\"]"));
+        }
+        HttpURLConnection conn = createConnection(urlString.toString());
+
+        // The list is newest first, so reading stops after the first version instead of the whole history
+        try (JsonReader reader = JsonStreams.reader(HttpTransport.body(conn))) {
+            reader.beginArray();
+            if (!reader.hasNext()) {
+                throw new IOException("No compatible version of " + projectId + " for " + gameVersion + "/" + loader);
+            }
+            VersionInfo version = readVersion(reader);
+            versionCache.put(version.id, version);
+            return version;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Fetches many versions with one request per {@value #BATCH_SIZE} ids. Unknown ids are left out.
+     */
+    public Map<String, VersionInfo> getVersions(Collection<String> versionIds) throws IOException {
+        Map<String, VersionInfo> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : versionIds) {
+            VersionInfo cached = versionCache.get(id);
+            if (cached != null) result.put(id, cached);
+            else if (!missing.contains(id)) missing.add(id);
+        }
+
+        for (int start = 0; start < missing.size(); start += BATCH_SIZE) {
+            List<String> batch = missing.subList(start, Math.min(missing.size(), start + BATCH_SIZE));
+            JsonArray ids = new JsonArray();
+            batch.forEach(ids::add);
+            HttpURLConnection conn = createConnection(API_BASE + "/versions?ids=" + encode(ids.toString()));
+            try (JsonReader reader = JsonStreams.reader(HttpTransport.body(conn))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    VersionInfo version = readVersion(reader);
+                    versionCache.put(version.id, version);
+                    result.put(version.id, version);
+                }
+                reader.endArray();
+            } finally {
+                conn.disconnect();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Identifies local files by SHA-1 in one request. Returns hash to version for files Modrinth knows.
+     */
+    public Map<String, VersionInfo> getVersionsByHash(Collection<String> sha1Hashes) throws IOException {
+        return getVersionsByHash(sha1Hashes, "sha1");
+    }
+
+    /**
+     * Same as {@link #getVersionsByHash(Collection)} for "sha1" or "sha512" hashes.
+     */
+    public Map<String, VersionInfo> getVersionsByHash(Collection<String> fileHashes, String algorithm) throws IOException {
+        Map<String, VersionInfo> result = new HashMap<>();
+        if (fileHashes.isEmpty()) return result;
 
-        try (InputStream in = conn.getInputStream()) {
-            String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
-            JsonObject version = JsonParser.parseString(response).getAsJsonArray().get(0).getAsJsonObject();
+        JsonObject request = new JsonObject();
+        JsonArray hashes = new JsonArray();
+        fileHashes.forEach(hashes::add);
+        request.add("hashes", hashes);
+        request.addProperty("algorithm", algorithm);
 
-            String versionId = version.get("id").getAsString();
-            return getVersionDownload(versionId);
+        HttpURLConnection conn = createConnection(API_BASE + "/version_files");
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/json");
+        try {
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(request.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            try (JsonReader reader = JsonStreams.reader(HttpTransport.body(conn))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String hash = reader.nextName();
+                    result.put(hash, readVersion(reader));
+                }
+                reader.endObject();
+            }
         } finally {
             conn.disconnect();
         }
+        return result;
+    }
+
+    private static VersionInfo readVersion(JsonReader reader) throws IOException {
+        VersionInfo version = new VersionInfo();
+        DownloadInfo primary = null;
+        DownloadInfo first = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> version.id = reader.nextString();
+                case "project_id" -> version.projectId = JsonStreams.nextStringOrNull(reader);
+                case "name" -> version.name = JsonStreams.nextStringOrNull(reader);
+                case "dependencies" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) version.dependencies.add(readDependency(reader));
+                    reader.endArray();
+                }
+                case "files" -> {
+                    // Use the primary file, or the first one if none is flagged
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        boolean[] isPrimary = new boolean[1];
+                        DownloadInfo file = readFile(reader, isPrimary);
+                        if (first == null) first = file;
+                        if (isPrimary[0] && primary == null) primary = file;
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (version.id == null || first == null) {
+            throw new IOException("Modrinth version response is missing its id or files");
+        }
+        if (version.name == null) version.name = version.id;
+        version.download = primary != null ? primary : first;
+        return version;
+    }
+
+    private static Dependency readDependency(JsonReader reader) throws IOException {
+        Dependency dependency = new Dependency();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "project_id" -> dependency.projectId = JsonStreams.nextStringOrNull(reader);
+                case "version_id" -> dependency.versionId = JsonStreams.nextStringOrNull(reader);
+                case "dependency_type" -> dependency.type = JsonStreams.nextStringOrNull(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return dependency;
+    }
+
+    private static DownloadInfo readFile(JsonReader reader, boolean[] isPrimary) throws IOException {
+        DownloadInfo info = new DownloadInfo();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "url" -> info.url = reader.nextString();
+                case "filename" -> info.filename = reader.nextString();
+                case "size" -> info.size = reader.nextLong();
+                case "primary" -> isPrimary[0] = JsonStreams.nextBooleanOrFalse(reader);
+                case "hashes" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "sha512" -> info.sha512 = JsonStreams.nextStringOrNull(reader);
+                            case "sha1" -> info.sha1 = JsonStreams.nextStringOrNull(reader);
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return info;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
 
     private HttpURLConnection createConnection(String urlString) throws IOException {
-        URL url = new URL(urlString);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        HttpURLConnection conn = HttpTransport.open(urlString);
         conn.setRequestMethod("GET");
-        conn.setRequestProperty("User-Agent", "ModController/1.0");
         
         if (apiKey != null && !apiKey.isEmpty()) {
             conn.setRequestProperty("Authorization", apiKey);
@@ -86,4 +255,18 @@ public class ModrinthAPI {
         public String sha512;
         public String sha1;
     }
+
+    public static class VersionInfo {
+        public String id;
+        public String projectId;
+        public String name;
+        public DownloadInfo download;
+        public List<Dependency> dependencies = new ArrayList<>();
+    }
+
+    public static class Dependency {
+        public String projectId;
+        public String versionId; // Null when any compatible version will do
+        public String type; // "required", "optional", "incompatible" or "embedded"
+    }
 }
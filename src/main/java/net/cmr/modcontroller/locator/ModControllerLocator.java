@@ -4,6 +4,7 @@ package net.cmr.modcontroller.locator;
 import com.google.gson.Gson;
 import net.cmr.modcontroller.config.ModConfig;
 import net.cmr.modcontroller.download.DownloadManager;
+import net.cmr.modcontroller.download.RunReport;
 import net.neoforged.neoforgespi.ILaunchContext;
 import net.neoforged.neoforgespi.locating.IDiscoveryPipeline;
 import net.neoforged.neoforgespi.locating.IModFileCandidateLocator;
@@ -55,7 +56,11 @@ public class ModControllerLocator implements IModFileCandidateLocator {
             final boolean isClientEnv = isClientEnvironment();
 
             // Consent gate
+            boolean downloadsNeeded = dm.shouldRunDownloads();
+            RunReport.Phase consentPhase = dm.startPhase("consent");
             if (config.requireConsentBeforeDownloads) {
+                // Resolve, verify and warm up connections while the user decides; nothing is downloaded yet
+                if (downloadsNeeded) dm.prepareAsync();
                 if (isClientEnv) {
                     System.out.println("Mod Controller: Consent required (client). Opening consent window...");
                     writeProgress(progressFile, "Consent Needed", 0,
@@ -90,7 +95,10 @@ public class ModControllerLocator implements IModFileCandidateLocator {
                 }
             }
 
-            if (!dm.shouldRunDownloads()) {
+            consentPhase.end();
+
+            if (!downloadsNeeded) {
+                dm.startArtifactServer();
                 System.out.println("Mod Controller: No downloads needed");
                 try { if (uiProcess != null && uiProcess.isAlive()) uiProcess.destroy(); } catch (Exception ignored) {}
                 return;
@@ -118,6 +126,7 @@ public class ModControllerLocator implements IModFileCandidateLocator {
             }
 
             DownloadManager.RunResult result = dm.runDownloads();
+            dm.startArtifactServer();
             int failedCount = result.failed;
             int successCount = result.success;
             int skippedCount = result.skipped;
@@ -168,6 +177,10 @@ public class ModControllerLocator implements IModFileCandidateLocator {
 
             try { if (uiProcess != null && uiProcess.isAlive()) uiProcess.destroy(); } catch (Exception ignored) {}
 
+            if (dm.startDeferredDownloads() != null) {
+                System.out.println("Mod Controller: Non-critical downloads continue in the background");
+            }
+
             System.out.println("========================================");
             System.out.println("MOD CONTROLLER: success=" + successCount +
                                " failed=" + failedCount + " skipped=" + skippedCount);
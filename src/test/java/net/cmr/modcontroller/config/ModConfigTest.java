@@ -0,0 +1,38 @@
+package net.cmr.modcontroller.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModConfigTest {
+    @TempDir
+    Path gameDir;
+
+    @Test
+    void missingPackIsReportedAsImportFailure() throws Exception {
+        writeConfig("{\"packs\": [{\"name\": \"Pack\", \"path\": \"packs/missing.mrpack\"}]}");
+
+        ModConfig config = ModConfig.load(gameDir);
+
+        assertTrue(config.packImportFailed);
+        assertTrue(config.packDownloads.isEmpty());
+    }
+
+    @Test
+    void configWithoutPacksHasNoImportFailure() throws Exception {
+        writeConfig("{\"downloads\": []}");
+
+        assertFalse(ModConfig.load(gameDir).packImportFailed);
+    }
+
+    private void writeConfig(String json) throws Exception {
+        Path file = gameDir.resolve("config/modcontroller.json");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, json);
+    }
+}
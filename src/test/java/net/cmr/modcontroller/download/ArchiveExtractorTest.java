@@ -0,0 +1,176 @@
+package net.cmr.modcontroller.download;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveExtractorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void rejectsPathsOutsideTarget() throws Exception {
+        byte[] zip = zip("bundle/ok.txt", "ok",
+                         "../escape.txt", "x",
+                         "bundle/../../escape.txt", "x",
+                         "/abs.txt", "x",
+                         "bundle/C:/drive.txt", "x");
+        Path target = dir.resolve("config");
+
+        ArchiveExtractor.Stats stats = extract(zip, "zip", target, 0, false);
+
+        assertEquals(1, stats.written.get());
+        assertEquals(4, stats.rejected.get());
+        assertEquals("ok", Files.readString(target.resolve("bundle/ok.txt")));
+        assertFalse(Files.exists(dir.resolve("escape.txt")));
+        assertFalse(Files.exists(target.resolve("bundle/C:")));
+    }
+
+    @Test
+    void stripComponentsDropsLeadingFolders() throws Exception {
+        Path target = dir.resolve("config");
+
+        ArchiveExtractor.Stats stats = extract(zip("bundle/sub/a.txt", "a", "README", "top level"), "zip", target, 1, false);
+
+        assertEquals(1, stats.written.get());
+        assertEquals("a", Files.readString(target.resolve("sub/a.txt")));
+        assertFalse(Files.exists(target.resolve("README")));
+    }
+
+    @Test
+    void nothingReachesTargetBeforeCommit() throws Exception {
+        Path target = dir.resolve("config");
+        Path staging = dir.resolve("staging");
+
+        ArchiveExtractor.extract(new ByteArrayInputStream(zip("a.txt", "new")), "zip", target, staging, 0, false);
+
+        assertFalse(Files.exists(target.resolve("a.txt")));
+        ArchiveExtractor.commit(staging, target);
+        assertEquals("new", Files.readString(target.resolve("a.txt")));
+    }
+
+    @Test
+    void unchangedFilesAreNotStaged() throws Exception {
+        Path target = dir.resolve("config");
+        Files.createDirectories(target);
+        Files.writeString(target.resolve("same.txt"), "same");
+
+        ArchiveExtractor.Stats stats = extract(zip("same.txt", "same", "other.txt", "other"), "zip", target, 0, true);
+
+        assertEquals(1, stats.unchanged.get());
+        assertEquals(1, stats.written.get());
+    }
+
+    @Test
+    void lastEntryForSamePathWins() throws Exception {
+        Path target = dir.resolve("config");
+
+        extract(zip("a.txt", "first", "./a.txt", "second", "x/../a.txt", "third"), "zip", target, 0, false);
+
+        assertEquals("third", Files.readString(target.resolve("a.txt")));
+        try (var files = Files.list(target)) {
+            assertEquals(1L, files.count());
+        }
+    }
+
+    @Test
+    void extractsTarWithLongNamesAndSkipsLinks() throws Exception {
+        String longName = "bundle/" + "deep/".repeat(30) + "file.txt";
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "././@LongLink", 'L', longName.getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, longName.substring(0, 99), '0', "long".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "PaxHeaders/x", 'x', paxRecord("path", "bundle/pax.txt"));
+        writeTarEntry(tar, "truncated-name", '0', "pax".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "bundle/link", '2', new byte[0]);
+        tar.write(new byte[1024]);
+        Path target = dir.resolve("config");
+
+        ArchiveExtractor.Stats stats = extract(tar.toByteArray(), "tar", target, 1, false);
+
+        assertEquals(2, stats.written.get());
+        assertEquals(1, stats.rejected.get());
+        assertEquals("long", Files.readString(target.resolve(longName.substring("bundle/".length()))));
+        assertEquals("pax", Files.readString(target.resolve("pax.txt")));
+        assertFalse(Files.exists(target.resolve("link")));
+    }
+
+    @Test
+    void tarReaderSkipsUnreadContent() throws Exception {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "a.txt", '0', "x".repeat(700).getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "dir/", '5', new byte[0]);
+        tar.write(new byte[1024]);
+        ArchiveExtractor.TarReader reader = new ArchiveExtractor.TarReader(new ByteArrayInputStream(tar.toByteArray()));
+
+        ArchiveExtractor.TarReader.Entry first = reader.next();
+        ArchiveExtractor.TarReader.Entry second = reader.next();
+
+        assertEquals("a.txt", first.name);
+        assertEquals(700L, first.size);
+        assertTrue(first.isFile());
+        assertEquals("dir/", second.name);
+        assertTrue(second.isDirectory());
+        assertNull(reader.next());
+    }
+
+    private ArchiveExtractor.Stats extract(byte[] archive, String format, Path target, int strip,
+                                           boolean skipUnchanged) throws IOException {
+        Path staging = dir.resolve("staging");
+        ArchiveExtractor.Stats stats = ArchiveExtractor.extract(new ByteArrayInputStream(archive), format, target,
+                                                                staging, strip, skipUnchanged);
+        ArchiveExtractor.commit(staging, target);
+        ArchiveExtractor.deleteStaging(staging);
+        return stats;
+    }
+
+    // Alternating entry names and contents
+    private static byte[] zip(String... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeTarEntry(ByteArrayOutputStream out, String name, char type, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        put(header, 0, name);
+        put(header, 100, "0000644");
+        put(header, 124, String.format("%011o", content.length));
+        header[156] = (byte) type;
+        put(header, 257, "ustar");
+        put(header, 263, "00");
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static byte[] paxRecord(String key, String value) {
+        String body = " " + key + "=" + value + "\n";
+        int length = body.length() + 1;
+        while (String.valueOf(length).length() + body.length() != length) length++;
+        return (length + body).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package net.cmr.modcontroller.download;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockMapTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void createCoversFileWithShortLastBlock() throws Exception {
+        byte[] data = randomBytes(10_000);
+        BlockMap map = BlockMap.create(file(data), 4096);
+
+        assertEquals(3, map.blockCount());
+        assertEquals(10_000L, map.length);
+        assertEquals(10_000 - 2 * 4096, map.blockLength(2));
+        assertEquals(8192L, map.blockOffset(2));
+        assertEquals(BlockMap.toHex(MessageDigest.getInstance("SHA-1").digest(data)), map.sha1);
+        assertEquals(BlockMap.RollingChecksum.of(data, 8192, 10_000 - 8192), map.weak[2]);
+    }
+
+    @Test
+    void writtenMapReadsBack() throws Exception {
+        BlockMap map = BlockMap.create(file(randomBytes(5000)), 1024);
+        StringWriter json = new StringWriter();
+        map.write(json);
+
+        BlockMap read = BlockMap.read(new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(map.blockSize, read.blockSize);
+        assertEquals(map.length, read.length);
+        assertEquals(map.sha1, read.sha1);
+        assertArrayEquals(map.weak, read.weak);
+        assertArrayEquals(map.strong, read.strong);
+    }
+
+    @Test
+    void readRejectsWrongBlockCount() {
+        String json = "{\"format\":\"" + BlockMap.FORMAT + "\",\"block_size\":1024,\"length\":3000,\"sha1\":\"00\"," +
+                      "\"blocks\":[\"00000001:0000000000000001\"]}";
+
+        assertThrows(IOException.class, () -> BlockMap.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void readRejectsUnknownFormat() {
+        String json = "{\"format\":\"other\",\"block_size\":1024,\"length\":0,\"blocks\":[]}";
+
+        assertThrows(IOException.class, () -> BlockMap.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void rollingMatchesFreshChecksumAtEveryOffset() {
+        byte[] data = randomBytes(2048);
+        int window = 256;
+        BlockMap.RollingChecksum rolling = new BlockMap.RollingChecksum(window);
+        rolling.reset(data, 0);
+
+        for (int offset = 0; offset + window <= data.length; offset++) {
+            assertEquals(BlockMap.RollingChecksum.of(data, offset, window), rolling.value());
+            if (offset + window < data.length) rolling.roll(data[offset], data[offset + window]);
+        }
+    }
+
+    private Path file(byte[] data) throws IOException {
+        Path file = dir.resolve("data.bin");
+        Files.write(file, data);
+        return file;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
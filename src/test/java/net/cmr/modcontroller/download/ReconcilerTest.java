@@ -0,0 +1,193 @@
+package net.cmr.modcontroller.download;
+
+import net.cmr.modcontroller.config.DownloadEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReconcilerTest {
+    @TempDir
+    Path gameDir;
+
+    private FileDownloader downloader;
+
+    @BeforeEach
+    void setUp() {
+        downloader = new FileDownloader("", "", false);
+    }
+
+    @Test
+    void entriesWithoutRecordAreDownloaded() {
+        Reconciler.Plan plan = Reconciler.load(gameDir).plan(List.of(pinned("A"), unpinned("B")));
+
+        assertEquals(2, plan.count(Reconciler.Action.DOWNLOAD));
+        assertEquals(2, plan.toRun().size());
+    }
+
+    @Test
+    void unchangedPinnedEntryIsNoopAndUnpinnedIsChecked() throws Exception {
+        DownloadEntry a = pinned("A");
+        DownloadEntry b = unpinned("B");
+        installAndSave(List.of(a, b));
+
+        Reconciler.Plan plan = Reconciler.load(gameDir).plan(List.of(a, b));
+
+        assertEquals(Reconciler.Action.NOOP, action(plan, "A"));
+        assertEquals(Reconciler.Action.CHECK, action(plan, "B"));
+        assertEquals(List.of(b), plan.toRun());
+    }
+
+    @Test
+    void changedSpecIsReplaced() throws Exception {
+        DownloadEntry a = pinned("A");
+        installAndSave(List.of(a));
+
+        DownloadEntry bumped = pinned("A");
+        bumped.sha1Hash = "0000000000000000000000000000000000000000";
+        Reconciler.Plan plan = Reconciler.load(gameDir).plan(List.of(bumped));
+
+        assertEquals(Reconciler.Action.REPLACE, action(plan, "A"));
+    }
+
+    @Test
+    void modifiedFileIsChecked() throws Exception {
+        DownloadEntry a = pinned("A");
+        installAndSave(List.of(a));
+        Files.writeString(file(a), "edited by hand");
+
+        Reconciler.Plan plan = Reconciler.load(gameDir).plan(List.of(a));
+
+        assertEquals(Reconciler.Action.CHECK, action(plan, "A"));
+    }
+
+    @Test
+    void orphanIsRemovedAndForgotten() throws Exception {
+        DownloadEntry a = pinned("A");
+        DownloadEntry b = pinned("B");
+        installAndSave(List.of(a, b));
+
+        Reconciler reconciler = Reconciler.load(gameDir);
+        Reconciler.Plan plan = reconciler.plan(List.of(a));
+        assertEquals(Reconciler.Action.REMOVE, action(plan, "B"));
+
+        assertEquals(1, reconciler.removeOrphans(plan, List.of(), downloader, true));
+        reconciler.save();
+        assertFalse(Files.exists(file(b)));
+        assertTrue(Files.exists(file(a)));
+        assertEquals(0, Reconciler.load(gameDir).plan(List.of(a)).count(Reconciler.Action.REMOVE));
+    }
+
+    @Test
+    void modifiedOrphanIsKept() throws Exception {
+        DownloadEntry b = pinned("B");
+        installAndSave(List.of(b));
+        Files.writeString(file(b), "edited by hand");
+
+        Reconciler reconciler = Reconciler.load(gameDir);
+        Reconciler.Plan plan = reconciler.plan(List.of());
+
+        assertEquals(0, reconciler.removeOrphans(plan, List.of(), downloader, true));
+        assertTrue(Files.exists(file(b)));
+    }
+
+    @Test
+    void orphanStillUsedByThisRunIsKept() throws Exception {
+        DownloadEntry b = pinned("B");
+        installAndSave(List.of(b));
+
+        Reconciler reconciler = Reconciler.load(gameDir);
+        Reconciler.Plan plan = reconciler.plan(List.of());
+
+        assertEquals(0, reconciler.removeOrphans(plan, List.of(file(b)), downloader, true));
+        assertTrue(Files.exists(file(b)));
+    }
+
+    @Test
+    void disabledRemovalForgetsRecordButKeepsFile() throws Exception {
+        DownloadEntry b = pinned("B");
+        installAndSave(List.of(b));
+
+        Reconciler reconciler = Reconciler.load(gameDir);
+        Reconciler.Plan plan = reconciler.plan(List.of());
+        reconciler.removeOrphans(plan, List.of(), downloader, false);
+        reconciler.save();
+
+        assertTrue(Files.exists(file(b)));
+        assertEquals(0, Reconciler.load(gameDir).plan(List.of()).count(Reconciler.Action.REMOVE));
+    }
+
+    @Test
+    void heldRemovalsKeepFilesAndRecords() throws Exception {
+        DownloadEntry a = pinned("A");
+        DownloadEntry fromPack = pinned("FromPack");
+        installAndSave(List.of(a, fromPack));
+
+        // The pack failed to import, so its entry is missing from the desired list
+        Reconciler reconciler = Reconciler.load(gameDir);
+        Reconciler.Plan plan = reconciler.plan(List.of(a), true);
+        assertEquals(0, plan.count(Reconciler.Action.REMOVE));
+
+        reconciler.removeOrphans(plan, List.of(), downloader, true);
+        reconciler.save();
+        assertTrue(Files.exists(file(fromPack)));
+
+        // Once the pack imports again, the entry is still known and needs nothing
+        Reconciler.Plan next = Reconciler.load(gameDir).plan(List.of(a, fromPack));
+        assertEquals(Reconciler.Action.NOOP, action(next, "FromPack"));
+    }
+
+    @Test
+    void entriesOutsideThePlanAreNotRecorded() throws Exception {
+        DownloadEntry a = pinned("A");
+        DownloadEntry dependency = pinned("Dependency");
+        Reconciler reconciler = Reconciler.load(gameDir);
+        reconciler.plan(List.of(a));
+        reconciler.record(a, place(a));
+        reconciler.record(dependency, place(dependency));
+        reconciler.save();
+
+        Reconciler.Plan plan = Reconciler.load(gameDir).plan(List.of(a));
+        assertEquals(0, plan.count(Reconciler.Action.REMOVE));
+        assertTrue(Files.exists(file(dependency)));
+    }
+
+    private void installAndSave(List<DownloadEntry> entries) throws Exception {
+        Reconciler reconciler = Reconciler.load(gameDir);
+        reconciler.plan(entries);
+        for (DownloadEntry entry : entries) reconciler.record(entry, place(entry));
+        reconciler.save();
+    }
+
+    private Path place(DownloadEntry entry) throws Exception {
+        Path file = file(entry);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "content of " + entry.name);
+        return file;
+    }
+
+    private Path file(DownloadEntry entry) {
+        return gameDir.resolve(entry.destination);
+    }
+
+    private static Reconciler.Action action(Reconciler.Plan plan, String name) {
+        return plan.steps.stream().filter(s -> s.name.equals(name)).findFirst().orElseThrow().action;
+    }
+
+    private static DownloadEntry pinned(String name) {
+        DownloadEntry entry = unpinned(name);
+        entry.sha1Hash = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+        return entry;
+    }
+
+    private static DownloadEntry unpinned(String name) {
+        return new DownloadEntry(name, "https://example.com/" + name + ".jar", "mods/" + name + ".jar");
+    }
+}
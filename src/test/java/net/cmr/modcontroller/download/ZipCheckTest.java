@@ -0,0 +1,97 @@
+package net.cmr.modcontroller.download;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZipCheckTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void acceptsJar() throws Exception {
+        Path jar = jar("mod.jar", 3);
+
+        assertNull(ZipCheck.problem(jar));
+        ZipCheck.verify(jar, "mod.jar");
+    }
+
+    @Test
+    void acceptsZip64Archive() throws Exception {
+        // More than 65535 entries makes ZipOutputStream write the ZIP64 end records
+        Path zip = jar("many.zip", 0x10000 + 1);
+
+        assertNull(ZipCheck.problem(zip));
+    }
+
+    @Test
+    void rejectsTruncatedJar() throws Exception {
+        byte[] whole = Files.readAllBytes(jar("mod.jar", 3));
+        Path cut = dir.resolve("cut.jar");
+        Files.write(cut, Arrays.copyOf(whole, whole.length - 10));
+
+        assertNotNull(ZipCheck.problem(cut));
+        assertThrows(IOException.class, () -> ZipCheck.verify(cut, "cut.jar"));
+    }
+
+    @Test
+    void rejectsJarWithoutTail() throws Exception {
+        byte[] whole = Files.readAllBytes(jar("mod.jar", 3));
+        Path cut = dir.resolve("half.jar");
+        Files.write(cut, Arrays.copyOf(whole, whole.length / 2));
+
+        assertEquals("no end of central directory (truncated?)", ZipCheck.problem(cut));
+    }
+
+    @Test
+    void rejectsHtmlPage() throws Exception {
+        Path page = dir.resolve("mod.jar");
+        Files.writeString(page, "\n<!DOCTYPE html>\n<html><body>Rate limited, try again later</body></html>\n" +
+                                " ".repeat(64));
+
+        assertEquals("looks like a text or HTML page", ZipCheck.problem(page));
+    }
+
+    @Test
+    void rejectsTinyFile() throws Exception {
+        Path tiny = dir.resolve("tiny.zip");
+        Files.write(tiny, new byte[] {'P', 'K'});
+
+        assertTrue(ZipCheck.problem(tiny).startsWith("only 2 bytes"));
+    }
+
+    @Test
+    void onlyArchiveNamesAreChecked() throws Exception {
+        Path text = dir.resolve("notes.txt");
+        Files.writeString(text, "<html></html>");
+
+        ZipCheck.verify(text, "notes.txt");
+        assertTrue(ZipCheck.applies("Mod.JAR"));
+    }
+
+    private Path jar(String name, int entries) throws IOException {
+        Path file = dir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < entries; i++) {
+                zip.putNextEntry(new ZipEntry("e" + i));
+                if (i < 3) zip.write(("entry " + i).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return file;
+    }
+}